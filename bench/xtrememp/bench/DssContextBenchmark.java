@@ -0,0 +1,126 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.SourceDataLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xtrememp.player.dsp.DssContext;
+
+/**
+ * Normalization of a 2048 frames window of stereo PCM with
+ * <code>DssContext.normalizeData</code>, as done for every visualization
+ * frame. The data in a direct buffer goes through the byte by byte
+ * decoding, which all the formats used before the array fast paths.
+ * <p>
+ * The baseline is the generic fallback of the current code, not the
+ * original method: it decodes byte by byte the same way, but the original
+ * also read the frame position of the line for its offset, which is not
+ * measured here. Its figures only approximate the code before the change.
+ *
+ * @author Besmir Beqiri
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DssContextBenchmark {
+
+    private static final int SAMPLE_SIZE = 2048;
+    @Param({"8", "16", "24"})
+    public int sampleSizeInBits;
+    private DssContext dssContext;
+    private ByteBuffer audioData;
+    private ByteBuffer directAudioData;
+
+    @Setup
+    public void setUp() {
+        final AudioFormat format = new AudioFormat(Fixtures.SAMPLE_RATE, sampleSizeInBits, Fixtures.CHANNELS, true, false);
+        // Only the format of the line is used by the context.
+        SourceDataLine line = (SourceDataLine) Proxy.newProxyInstance(
+                SourceDataLine.class.getClassLoader(),
+                new Class<?>[]{SourceDataLine.class},
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getFormat")) {
+                            return format;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        dssContext = new DssContext(line, SAMPLE_SIZE);
+        audioData = ByteBuffer.wrap(toSampleSize(Fixtures.pcm16(SAMPLE_SIZE), sampleSizeInBits / 8));
+        directAudioData = ByteBuffer.allocateDirect(audioData.capacity());
+        directAudioData.put(audioData.array());
+        directAudioData.clear();
+    }
+
+    /**
+     * Converts 16 bits little-endian samples to the given sample size.
+     */
+    private static byte[] toSampleSize(byte[] pcm16, int bytes) {
+        byte[] data = new byte[pcm16.length / 2 * bytes];
+        for (int i = 0, pos = 0; i < pcm16.length; i += 2) {
+            if (bytes == 1) {
+                data[pos++] = pcm16[i + 1];
+            } else {
+                for (int b = 2; b < bytes; b++) {
+                    data[pos++] = 0;
+                }
+                data[pos++] = pcm16[i];
+                data[pos++] = pcm16[i + 1];
+            }
+        }
+        return data;
+    }
+
+    @Benchmark
+    public float[][] normalizeData() {
+        dssContext.normalizeData(audioData);
+        return dssContext.getChannelsData();
+    }
+
+    /**
+     * The generic fallback, standing in for the original decoding.
+     */
+    @Benchmark
+    public float[][] normalizeDataByteByByte() {
+        dssContext.normalizeData(directAudioData);
+        return dssContext.getChannelsData();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xtrememp.player.audio.EqAudioInputStream;
+
+/**
+ * Equalization of a read buffer of 16 bits stereo PCM by
+ * <code>EqAudioInputStream</code>, with every band active. The sample by
+ * sample filter is now run a block at a time by <code>processBlock</code>,
+ * so the benchmark goes through <code>read</code>.
+ *
+ * @author Besmir Beqiri
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EqAudioInputStreamBenchmark {
+
+    private static final int BUFFER_FRAMES = 1152;
+    private final byte[] buffer = new byte[BUFFER_FRAMES * Fixtures.CHANNELS * 2];
+    private EqAudioInputStream eqStream;
+
+    @Setup
+    public void setUp() {
+        AudioFormat format = new AudioFormat(Fixtures.SAMPLE_RATE, 16, Fixtures.CHANNELS, true, false);
+        InputStream source = new LoopInputStream(Fixtures.pcm16((int) Fixtures.SAMPLE_RATE));
+        eqStream = new EqAudioInputStream(new AudioInputStream(source, format, AudioSystem.NOT_SPECIFIED));
+        int[] gains = new int[EqAudioInputStream.BAND_COUNT];
+        for (int band = 0; band < gains.length; band++) {
+            gains[band] = (band % 2 == 0) ? EqAudioInputStream.MAX_GAIN / 2 : -EqAudioInputStream.MAX_GAIN / 3;
+        }
+        eqStream.setGains(gains);
+    }
+
+    @Benchmark
+    public byte[] read() throws IOException {
+        eqStream.read(buffer, 0, buffer.length);
+        return buffer;
+    }
+
+    /**
+     * An endless stream over the same data.
+     */
+    private static class LoopInputStream extends InputStream {
+
+        private final byte[] data;
+        private int position;
+
+        LoopInputStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            int b = data[position] & 0xFF;
+            position = (position + 1) % data.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = Math.min(len, data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position = (position + n) % data.length;
+            return n;
+        }
+    }
+}
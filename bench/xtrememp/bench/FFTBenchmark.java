@@ -0,0 +1,67 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xtrememp.visualization.spectrum.FFT;
+import xtrememp.visualization.spectrum.WindowFunction;
+
+/**
+ * Spectrum of a 2048 samples window with <code>FFT.calculate</code>, as the
+ * spectrum analyzer computes it for every frame.
+ *
+ * @author Besmir Beqiri
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FFTBenchmark {
+
+    private static final int SAMPLE_SIZE = 2048;
+    private final float[] sample = new float[SAMPLE_SIZE];
+    private FFT fft;
+
+    @Setup
+    public void setUp() {
+        byte[] pcm = Fixtures.pcm16(SAMPLE_SIZE);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            int pos = i * Fixtures.CHANNELS * 2;
+            sample[i] = ((pcm[pos + 1] << 8) | (pcm[pos] & 0xFF)) / 32768.0F;
+        }
+        fft = new FFT(SAMPLE_SIZE, WindowFunction.HANN);
+    }
+
+    @Benchmark
+    public float[] calculate() {
+        return fft.calculate(sample);
+    }
+}
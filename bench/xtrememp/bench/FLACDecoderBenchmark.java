@@ -0,0 +1,78 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.kc7bfi.jflac.FLACDecoder;
+import org.kc7bfi.jflac.frame.Frame;
+import org.kc7bfi.jflac.util.ByteData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and decoding of one FLAC frame to PCM, with
+ * <code>FLACDecoder.readNextFrame</code> and
+ * <code>FLACDecoder.decodeFrame</code>.
+ *
+ * @author Besmir Beqiri
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FLACDecoderBenchmark {
+
+    private byte[] data;
+    private FLACDecoder decoder;
+    private ByteData pcmData;
+
+    @Setup
+    public void setUp() throws IOException {
+        data = Fixtures.load("synthetic.flac");
+        open();
+    }
+
+    private void open() throws IOException {
+        decoder = new FLACDecoder(new ByteArrayInputStream(data));
+        decoder.readMetadata();
+    }
+
+    @Benchmark
+    public ByteData decodeFrame() throws IOException {
+        Frame frame = decoder.readNextFrame();
+        if (frame == null) {
+            open();
+            frame = decoder.readNextFrame();
+        }
+        pcmData = decoder.decodeFrame(frame, pcmData);
+        return pcmData;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.bench;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Access to the benchmark fixtures and to the synthetic signal they were
+ * made from.
+ * <p>
+ * The files under <code>bench/fixtures</code> hold five seconds of the
+ * signal below, 44.1 kHz 16 bits stereo, encoded with ffmpeg to MP3
+ * (libmp3lame, 128 kbps CBR), FLAC (level 5) and Ogg Vorbis (libvorbis,
+ * quality 4). Their location can be changed with the
+ * <code>xtrememp.bench.fixtures</code> system property.
+ *
+ * @author Besmir Beqiri
+ */
+final class Fixtures {
+
+    public static final float SAMPLE_RATE = 44100.0F;
+    public static final int CHANNELS = 2;
+    private static final File DIRECTORY = new File(System.getProperty("xtrememp.bench.fixtures", "bench/fixtures"));
+
+    private Fixtures() {
+    }
+
+    /**
+     * Reads a fixture file in memory.
+     *
+     * @param name The file name.
+     * @return The content of the file.
+     * @throws IOException If the file could not be read.
+     */
+    public static byte[] load(String name) throws IOException {
+        File file = new File(DIRECTORY, name);
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * Returns the synthetic signal as 16 bits little-endian stereo PCM: a
+     * chord with a slow tremolo on each channel and a little noise.
+     *
+     * @param frames The number of frames.
+     * @return The PCM data.
+     */
+    public static byte[] pcm16(int frames) {
+        byte[] data = new byte[frames * CHANNELS * 2];
+        Random random = new Random(0);
+        for (int i = 0, pos = 0; i < frames; i++) {
+            double t = i / (double) SAMPLE_RATE;
+            double left = 0.3 * Math.sin(2 * Math.PI * 220 * t) * (1 + 0.5 * Math.sin(2 * Math.PI * 3 * t))
+                    + 0.2 * Math.sin(2 * Math.PI * 277.18 * t)
+                    + 0.15 * Math.sin(2 * Math.PI * 329.63 * t)
+                    + 0.05 * (random.nextDouble() - 0.5);
+            double right = 0.3 * Math.sin(2 * Math.PI * 220 * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 277.18 * t) * (1 + 0.5 * Math.sin(2 * Math.PI * 2 * t))
+                    + 0.15 * Math.sin(2 * Math.PI * 440 * t)
+                    + 0.05 * (random.nextDouble() - 0.5);
+            pos = putSample(data, pos, left);
+            pos = putSample(data, pos, right);
+        }
+        return data;
+    }
+
+    private static int putSample(byte[] data, int pos, double value) {
+        int sample = (int) Math.round(Math.max(-1.0, Math.min(1.0, value)) * 32767);
+        data[pos] = (byte) sample;
+        data[pos + 1] = (byte) (sample >> 8);
+        return pos + 2;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.Obuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of one MPEG-1 Layer III frame, through the
+ * <code>LayerIIIDecoder</code> of the mpeg audio SPI.
+ *
+ * @author Besmir Beqiri
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LayerIIIDecoderBenchmark {
+
+    private byte[] data;
+    private Bitstream bitstream;
+    private Decoder decoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        data = Fixtures.load("synthetic.mp3");
+        open();
+    }
+
+    /**
+     * Restarts from the first frame, with a new decoder since the frame
+     * decoders are bound to their bitstream.
+     */
+    private void open() {
+        bitstream = new Bitstream(new ByteArrayInputStream(data));
+        decoder = new Decoder();
+    }
+
+    @Benchmark
+    public Obuffer decodeFrame() throws JavaLayerException {
+        Header header = bitstream.readFrame();
+        if (header == null) {
+            open();
+            header = bitstream.readFrame();
+        }
+        Obuffer output = decoder.decodeFrame(header, bitstream);
+        bitstream.closeFrame();
+        return output;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.bench;
+
+import com.jcraft.jogg.Packet;
+import com.jcraft.jogg.Page;
+import com.jcraft.jogg.StreamState;
+import com.jcraft.jogg.SyncState;
+import com.jcraft.jorbis.Block;
+import com.jcraft.jorbis.Comment;
+import com.jcraft.jorbis.DspState;
+import com.jcraft.jorbis.Info;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Synthesis of one Vorbis audio packet with the jorbis
+ * <code>Block.synthesis</code> and <code>DspState.synthesis_blockin</code>.
+ * The packets are extracted from the Ogg stream beforehand.
+ *
+ * @author Besmir Beqiri
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VorbisSynthesisBenchmark {
+
+    private final Info info = new Info();
+    private final Comment comment = new Comment();
+    private final DspState dspState = new DspState();
+    private final float[][][] pcm = new float[1][][];
+    private final int[] index = new int[2];
+    private Block block;
+    private Packet[] packets;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] data = Fixtures.load("synthetic.ogg");
+        SyncState syncState = new SyncState();
+        StreamState streamState = null;
+        Page page = new Page();
+        Packet packet = new Packet();
+        List<Packet> audioPackets = new ArrayList<Packet>();
+        int headers = 0;
+        int offset = syncState.buffer(data.length);
+        System.arraycopy(data, 0, syncState.data, offset, data.length);
+        syncState.wrote(data.length);
+        info.init();
+        comment.init();
+        while (syncState.pageout(page) == 1) {
+            if (streamState == null) {
+                streamState = new StreamState();
+                streamState.init(page.serialno());
+            }
+            streamState.pagein(page);
+            while (streamState.packetout(packet) == 1) {
+                if (headers < 3) {
+                    if (info.synthesis_headerin(comment, packet) < 0) {
+                        throw new IOException("Not a Vorbis stream");
+                    }
+                    headers++;
+                } else {
+                    audioPackets.add(copy(packet));
+                }
+            }
+        }
+        packets = audioPackets.toArray(new Packet[audioPackets.size()]);
+        start();
+    }
+
+    /**
+     * Copies a packet out of the stream buffer, which is reused.
+     */
+    private static Packet copy(Packet packet) {
+        Packet copy = new Packet();
+        copy.packet_base = new byte[packet.bytes];
+        System.arraycopy(packet.packet_base, packet.packet, copy.packet_base, 0, packet.bytes);
+        copy.packet = 0;
+        copy.bytes = packet.bytes;
+        copy.b_o_s = packet.b_o_s;
+        copy.e_o_s = packet.e_o_s;
+        copy.granulepos = packet.granulepos;
+        copy.packetno = packet.packetno;
+        return copy;
+    }
+
+    private void start() {
+        dspState.synthesis_init(info);
+        block = new Block(dspState);
+        next = 0;
+    }
+
+    @Benchmark
+    public int synthesis() {
+        if (next == packets.length) {
+            start();
+        }
+        if (block.synthesis(packets[next++]) == 0) {
+            dspState.synthesis_blockin(block);
+        }
+        int samples = dspState.synthesis_pcmout(pcm, index);
+        if (samples > 0) {
+            dspState.synthesis_read(samples);
+        }
+        return samples;
+    }
+}
@@ -38,6 +38,13 @@ import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import javax.sound.sampled.AudioSystem;
 import javax.swing.BorderFactory;
@@ -52,6 +59,8 @@ import javax.swing.JViewport;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.border.Border;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
@@ -71,8 +80,10 @@ import xtrememp.playlist.PlaylistException;
 import xtrememp.playlist.PlaylistIO;
 import xtrememp.playlist.PlaylistItem;
 import xtrememp.playlist.filter.Predicate;
+import xtrememp.playlist.filter.SearchIndex;
 import xtrememp.playlist.filter.TruePredicate;
-import xtrememp.tag.TagInfo;
+import xtrememp.playlist.sort.PlaylistSorter;
+import xtrememp.ui.label.BusyLabel;
 import xtrememp.ui.table.PlaylistColumn;
 import xtrememp.ui.table.PlaylistTableColumn;
 import xtrememp.ui.table.PlaylistTableColumnModel;
@@ -96,6 +107,7 @@ public class PlaylistManager extends JPanel implements ActionListener,
         DropTargetListener, ListSelectionListener {
 
     private final Logger logger = LoggerFactory.getLogger(PlaylistManager.class);
+    private static final int SEARCH_DELAY = 150;
     private final AudioFileFilter audioFileFilter = AudioFileFilter.INSTANCE;
     private final PlaylistFileFilter playlistFileFilter = PlaylistFileFilter.INSTANCE;
     private JButton openPlaylistButton;
@@ -112,7 +124,11 @@ public class PlaylistManager extends JPanel implements ActionListener,
     private PlaylistTableModel playlistTableModel;
     private PlaylistTableColumnModel playlistTableColumnModel;
     private SearchTextField searchTextField;
-    private Predicate<PlaylistItem> searchFilter;
+    private SearchIndex searchIndex;
+    private final List<PlaylistTableColumn> sortColumns = new ArrayList<>();
+    private ExecutorService filterExecutor;
+    private Timer filterTimer;
+    private FilterWorker filterWorker;
     private String searchString;
     private int doubleSelectedRow = -1;
     private volatile boolean firstLoad = false;
@@ -201,9 +217,21 @@ public class PlaylistManager extends JPanel implements ActionListener,
 
                 int clickedColumn = playlistTableColumnModel.getColumnIndexAtX(ev.getX());
                 PlaylistTableColumn playlistColumn = playlistTableColumnModel.getColumn(clickedColumn);
-                playlistTableColumnModel.resetAll(playlistColumn.getModelIndex());
+                // Shift-click adds the column to the sort keys.
+                if (!ev.isShiftDown()) {
+                    playlistTableColumnModel.resetAll(playlistColumn.getModelIndex());
+                    sortColumns.clear();
+                }
                 playlistColumn.setSortOrderUp(!playlistColumn.isSortOrderUp());
-                playlistTableModel.sort(playlistColumn.getComparator());
+                if (!sortColumns.contains(playlistColumn)) {
+                    sortColumns.add(playlistColumn);
+                }
+                List<PlaylistSorter.Key> sortKeys = new ArrayList<>(sortColumns.size());
+                for (PlaylistTableColumn sortColumn : sortColumns) {
+                    sortKeys.add(new PlaylistSorter.Key(sortColumn.getPlaylistColumn().getSortField(),
+                            sortColumn.isSortOrderUp()));
+                }
+                playlistTableModel.sort(new PlaylistSorter(sortKeys));
 
                 colorizeRow();
             }
@@ -290,19 +318,22 @@ public class PlaylistManager extends JPanel implements ActionListener,
     }
 
     private void initFiltering() {
-        searchFilter = new Predicate<PlaylistItem>() {
+        searchIndex = new SearchIndex();
+        searchIndex.addAll(playlist.listAllItems());
+        playlist.addPlaylistListener(searchIndex);
+        filterExecutor = Executors.newSingleThreadExecutor();
+        filterTimer = new Timer(SEARCH_DELAY, new ActionListener() {
 
             @Override
-            public boolean evaluate(PlaylistItem pli) {
-                StringBuilder sb = new StringBuilder();
-                TagInfo tagInfo = pli.getTagInfo();
-                sb.append(tagInfo.getTrack()).append(tagInfo.getTitle()).append(
-                        tagInfo.getArtist()).append(tagInfo.getAlbum()).append(
-                        tagInfo.getGenre());
-                return sb.toString().toLowerCase().contains(
-                        PlaylistManager.this.searchString.toLowerCase());
+            public void actionPerformed(ActionEvent e) {
+                if (filterWorker != null) {
+                    filterWorker.cancel(true);
+                }
+                filterWorker = new FilterWorker(searchString);
+                filterExecutor.execute(filterWorker);
             }
-        };
+        });
+        filterTimer.setRepeats(false);
     }
 
     protected void addFiles(List<File> files, boolean playFirst) {
@@ -334,7 +365,19 @@ public class PlaylistManager extends JPanel implements ActionListener,
     }
 
     public void loadPlaylist(String location) {
-        PlaylistLoaderWorker playlistLoader = new PlaylistLoaderWorker(location);
+        PlaylistLoaderWorker playlistLoader = new PlaylistLoaderWorker(location, false);
+        playlistLoader.execute();
+    }
+
+    /**
+     * Replaces the playlist with the one loaded from the given location. The
+     * playlist is cleared along with adding the first loaded items, in a
+     * single change.
+     *
+     * @param location A playlist location.
+     */
+    public void openPlaylist(String location) {
+        PlaylistLoaderWorker playlistLoader = new PlaylistLoaderWorker(location, true);
         playlistLoader.execute();
     }
 
@@ -358,8 +401,7 @@ public class PlaylistManager extends JPanel implements ActionListener,
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
             Settings.setLastDir(file.getPath());
-            clearPlaylist();
-            loadPlaylist(file.getPath());
+            openPlaylist(file.getPath());
         }
     }
 
@@ -453,17 +495,23 @@ public class PlaylistManager extends JPanel implements ActionListener,
     public void remove() {
         int selectedRowCount = playlistTable.getSelectedRowCount();
         if (selectedRowCount > 0) {
-            if (selectedRowCount == playlist.size() && !playlist.isFiltered()) {
-                clearPlaylist();
-                return;
-            }
-            List<PlaylistItem> items = new ArrayList<PlaylistItem>();
-            int[] selectedRows = playlistTable.getSelectedRows();
-            for (int i = 0, len = selectedRows.length; i < len; i++) {
-                items.add(playlist.getItemAt(selectedRows[i]));
+            // A single change event, however the selection is removed.
+            playlist.beginUpdate();
+            try {
+                if (selectedRowCount == playlist.size() && !playlist.isFiltered()) {
+                    clearPlaylist();
+                    return;
+                }
+                List<PlaylistItem> items = new ArrayList<PlaylistItem>();
+                int[] selectedRows = playlistTable.getSelectedRows();
+                for (int i = 0, len = selectedRows.length; i < len; i++) {
+                    items.add(playlist.getItemAt(selectedRows[i]));
+                }
+                playlistTableModel.removeAll(items);
+                clearSelection();
+            } finally {
+                playlist.commitUpdate();
             }
-            playlistTableModel.removeAll(items);
-            clearSelection();
             colorizeRow();
         }
     }
@@ -650,16 +698,20 @@ public class PlaylistManager extends JPanel implements ActionListener,
         public void changeFilter(DocumentEvent event) {
             Document document = event.getDocument();
             try {
-                clearSelection();
                 searchString = document.getText(0, document.getLength());
                 if (searchString != null && !searchString.isEmpty()) {
-                    playlistTableModel.filter(searchFilter);
-                    moveUpButton.setEnabled(false);
-                    moveDownButton.setEnabled(false);
+                    // Wait for the typing to pause, the timer starts the search.
+                    filterTimer.restart();
                 } else {
+                    filterTimer.stop();
+                    if (filterWorker != null) {
+                        filterWorker.cancel(true);
+                        filterWorker = null;
+                    }
+                    clearSelection();
                     playlistTableModel.filter(TruePredicate.<PlaylistItem>getInstance());
+                    colorizeRow();
                 }
-                colorizeRow();
             } catch (Exception ex) {
             }
         }
@@ -680,38 +732,281 @@ public class PlaylistManager extends JPanel implements ActionListener,
         }
     }
 
-    protected class PlaylistLoaderWorker extends AbstractSwingWorker<Void, PlaylistItem> {
+    /**
+     * Searches the playlist in the background. The matching items are
+     * swapped into the playlist at once, unless the search has been
+     * superseded by a newer one.
+     */
+    protected class FilterWorker extends SwingWorker<List<PlaylistItem>, Void> {
+
+        private final String query;
+        private final List<PlaylistItem> items;
+        private final int modificationCount;
+        private Predicate<PlaylistItem> predicate;
+
+        public FilterWorker(String query) {
+            this.query = query;
+            this.items = new ArrayList<>(playlist.listAllItems());
+            this.modificationCount = playlist.getModificationCount();
+        }
 
-        private final String location;
+        @Override
+        protected List<PlaylistItem> doInBackground() throws Exception {
+            predicate = searchIndex.search(query);
+            List<PlaylistItem> result = new ArrayList<>();
+            for (int i = 0, n = items.size(); i < n; i++) {
+                if ((i & 0x3ff) == 0 && isCancelled()) {
+                    return null;
+                }
+                PlaylistItem pli = items.get(i);
+                if (predicate.evaluate(pli)) {
+                    result.add(pli);
+                }
+            }
+            return result;
+        }
 
-        public PlaylistLoaderWorker(String location) {
-            this.location = location;
+        @Override
+        protected void done() {
+            if (isCancelled() || filterWorker != this) {
+                return;
+            }
+            if (modificationCount != playlist.getModificationCount()) {
+                // The playlist changed meanwhile, the result is stale: search
+                // again in the background rather than filtering here.
+                filterWorker = new FilterWorker(query);
+                filterExecutor.execute(filterWorker);
+                return;
+            }
+            filterWorker = null;
+            try {
+                List<PlaylistItem> result = get();
+                clearSelection();
+                playlistTableModel.filter(predicate, result);
+                moveUpButton.setEnabled(false);
+                moveDownButton.setEnabled(false);
+                colorizeRow();
+            } catch (InterruptedException | ExecutionException ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Base worker for reading the tag info of playlist items on a bounded pool
+     * of threads. Items can be added while they are found, they are published
+     * in their original order and in batches, and the worker waits when the
+     * EDT falls behind. Clicking the busy label cancels the worker.
+     */
+    protected abstract class TagInfoWorker extends AbstractSwingWorker<Void, PlaylistItem> {
+
+        private static final int BATCH_SIZE = 256;
+        private static final long BATCH_INTERVAL = 200000000L;
+        private final Semaphore pendingItems = new Semaphore(4 * BATCH_SIZE);
+        private final Deque<Future<PlaylistItem>> window = new ArrayDeque<>();
+        private final List<PlaylistItem> batch = new ArrayList<>(BATCH_SIZE);
+        private ExecutorService executor;
+        private int parallelism;
+        private int count;
+        private long lastPublishTime;
+        private volatile int total;
+        private volatile long startTime;
+        private int loaded;
+        private final MouseListener cancelListener = new MouseAdapter() {
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                cancel(true);
+            }
+        };
+
+        public TagInfoWorker() {
+            XtremeMP.getInstance().getBusyLabel().addMouseListener(cancelListener);
+        }
+
+        /**
+         * Reads the tag info of the given items and publishes them.
+         *
+         * @param items
+         * @throws InterruptedException
+         * @throws ExecutionException
+         */
+        protected void loadTagInfo(List<PlaylistItem> items) throws InterruptedException, ExecutionException {
+            startTagInfo();
+            try {
+                for (PlaylistItem pli : items) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    addTagInfo(pli);
+                }
+                finishTagInfo();
+            } finally {
+                stopTagInfo();
+            }
+        }
+
+        /**
+         * Starts the threads reading tag info.
+         */
+        protected void startTagInfo() {
+            parallelism = Math.max(1, Settings.getTagReaderThreads());
+            executor = Executors.newFixedThreadPool(parallelism);
+            startTime = System.nanoTime();
+            lastPublishTime = startTime;
+        }
+
+        /**
+         * Queues an item for reading its tag info. Items already read are
+         * published, and the caller waits while too many are in flight.
+         *
+         * @param pli
+         * @throws InterruptedException
+         * @throws ExecutionException
+         */
+        protected void addTagInfo(PlaylistItem pli) throws InterruptedException, ExecutionException {
+            total++;
+            window.add(executor.submit(new TagInfoTask(pli)));
+            while (!window.isEmpty() && (window.size() > 4 * parallelism || window.peek().isDone())) {
+                publishNext();
+            }
+        }
+
+        /**
+         * Waits for the queued items and publishes them.
+         *
+         * @throws InterruptedException
+         * @throws ExecutionException
+         */
+        protected void finishTagInfo() throws InterruptedException, ExecutionException {
+            while (!window.isEmpty() && !isCancelled()) {
+                publishNext();
+            }
+            if (!batch.isEmpty() && !isCancelled()) {
+                publishBatch();
+            }
+        }
+
+        /**
+         * Stops the threads reading tag info.
+         */
+        protected void stopTagInfo() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        private void publishNext() throws InterruptedException, ExecutionException {
+            batch.add(window.poll().get());
+            count++;
+            if (batch.size() >= BATCH_SIZE || System.nanoTime() - lastPublishTime >= BATCH_INTERVAL) {
+                publishBatch();
+            }
+        }
+
+        private void publishBatch() throws InterruptedException {
+            pendingItems.acquire(batch.size());
+            publish(batch.toArray(new PlaylistItem[batch.size()]));
+            batch.clear();
+            lastPublishTime = System.nanoTime();
+            setProgress(100 * count / total);
         }
 
         @Override
-        protected Void doInBackground() throws Exception {
-            List<PlaylistItem> pliList = PlaylistIO.load(location);
-            int count = 0;
-            int size = pliList.size();
-            for (PlaylistItem pli : pliList) {
-                if (pli.isFile()) {
+        protected void process(List<PlaylistItem> moreItems) {
+            playlistTableModel.add(moreItems);
+            pendingItems.release(moreItems.size());
+            loaded += moreItems.size();
+            XtremeMP.getInstance().getBusyLabel().setToolTipText(tr("MainFrame.StatusBar.ReadingTags")
+                    + ": " + loaded + "/" + total + " (" + getThroughput() + " files/s) - "
+                    + tr("MainFrame.StatusBar.ClickToCancel"));
+        }
+
+        @Override
+        protected void done() {
+            setProgress(100);
+            BusyLabel busyLabel = XtremeMP.getInstance().getBusyLabel();
+            busyLabel.removeMouseListener(cancelListener);
+            busyLabel.setToolTipText(null);
+            if (loaded > 0) {
+                logger.info("Tag info of {} items read at {} files/s", loaded, getThroughput());
+            }
+        }
+
+        private long getThroughput() {
+            long elapsed = Math.max(System.nanoTime() - startTime, 1);
+            return Math.round(loaded * 1000000000.0 / elapsed);
+        }
+    }
+
+    private class TagInfoTask implements Callable<PlaylistItem> {
+
+        private final PlaylistItem pli;
+
+        public TagInfoTask(PlaylistItem pli) {
+            this.pli = pli;
+        }
+
+        @Override
+        public PlaylistItem call() {
+            if (pli.isFile()) {
+                try {
                     pli.getTagInfo();
+                } catch (RuntimeException ex) {
+                    logger.error("Can't read tag info: " + pli.getLocation(), ex);
+                }
+                if (searchIndex != null) {
+                    searchIndex.update(pli);
                 }
-                publish(pli);
-                count++;
-                setProgress(100 * count / size);
             }
+            return pli;
+        }
+    }
+
+    protected class PlaylistLoaderWorker extends TagInfoWorker {
+
+        private final String location;
+        private boolean replace;
+
+        /**
+         * @param location the playlist location
+         * @param replace if true the playlist is cleared with the first items
+         */
+        public PlaylistLoaderWorker(String location, boolean replace) {
+            this.location = location;
+            this.replace = replace;
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            loadTagInfo(PlaylistIO.load(location));
             return null;
         }
 
         @Override
         protected void process(List<PlaylistItem> moreItems) {
-            playlistTableModel.add(moreItems);
+            if (replace) {
+                replace = false;
+                playlist.beginUpdate();
+                try {
+                    clearPlaylist();
+                    super.process(moreItems);
+                } finally {
+                    playlist.commitUpdate();
+                }
+            } else {
+                super.process(moreItems);
+            }
         }
 
         @Override
         protected void done() {
-            setProgress(100);
+            if (replace) {
+                // Nothing was loaded.
+                replace = false;
+                clearPlaylist();
+            }
+            super.done();
             if (!playlist.isEmpty()) {
                 clearPlaylistButton.setEnabled(true);
                 AudioPlayer audioPlayer = XtremeMP.getInstance().getAudioPlayer();
@@ -733,11 +1028,12 @@ public class PlaylistManager extends JPanel implements ActionListener,
         }
     }
 
-    protected class AddFilesWorker extends AbstractSwingWorker<Void, PlaylistItem> {
+    protected class AddFilesWorker extends TagInfoWorker {
 
         private final List<Path> pathList;
         private final boolean playFirst;
         private int firstIndex;
+        private boolean started = false;
         private DirectoryStream.Filter<Path> filter = new DirectoryStream.Filter<Path>() {
 
             @Override
@@ -770,40 +1066,44 @@ public class PlaylistManager extends JPanel implements ActionListener,
         }
 
         @Override
-        protected Void doInBackground() {
-            List<Path> tempFileList = new ArrayList<>();
-            for (Path path : pathList) {
-                if (Files.isDirectory(path)) {
-                    scanDir(path, tempFileList);
-                } else if (acceptPath(path, AudioFileFilter.AudioFileExt)) {
-                    tempFileList.add(path);
+        protected Void doInBackground() throws Exception {
+            startTagInfo();
+            try {
+                for (Path path : pathList) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    scanDir(path);
                 }
-            }
-
-            int count = 0;
-            int size = tempFileList.size();
-            for (Path file : tempFileList) {
-                String baseName = FilenameUtils.getBaseName(file.toFile().getName());
-                PlaylistItem pli = new PlaylistItem(baseName, file.toFile().getAbsolutePath(), -1, true);
-                pli.getTagInfo();
-                publish(pli);
-                count++;
-                setProgress(100 * count / size);
+                finishTagInfo();
+            } catch (CancellationException ex) {
+                // Cancelled from the UI while scanning.
+            } finally {
+                stopTagInfo();
             }
             return null;
         }
 
         @Override
         protected void process(List<PlaylistItem> moreItems) {
-            playlistTableModel.add(moreItems);
+            super.process(moreItems);
+            // Start playing as soon as the first items are in the playlist.
+            if (playFirst && !started && !playlist.isEmpty()) {
+                started = true;
+                clearPlaylistButton.setEnabled(true);
+                firstLoad = false;
+                playlist.setCursor(playlist.getItemAt(firstIndex));
+                controlListener.acOpenAndPlay();
+            }
         }
 
         @Override
         protected void done() {
-            setProgress(100);
+            super.done();
             if (!playlist.isEmpty()) {
                 clearPlaylistButton.setEnabled(true);
-                if (playFirst) {
+                if (playFirst && !started) {
+                    started = true;
                     firstLoad = false;
                     playlist.setCursor(playlist.getItemAt(firstIndex));
                     controlListener.acOpenAndPlay();
@@ -811,18 +1111,50 @@ public class PlaylistManager extends JPanel implements ActionListener,
             }
         }
 
-        protected void scanDir(Path path, List<Path> pathList) {
-            try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(path, filter)) {
-                for (Path p : dirStream) {
-                    if (Files.isDirectory(p)) {
-                        scanDir(p, pathList);
+        /**
+         * Walks the given file tree and queues the audio files as soon as
+         * they are found. Symbolic links are followed, directories already
+         * visited through another link are skipped.
+         *
+         * @param path a file or a directory
+         * @throws IOException
+         */
+        protected void scanDir(Path path) throws IOException {
+            Files.walkFileTree(path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return isCancelled() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (isCancelled()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (attrs.isRegularFile() && filter.accept(file)) {
+                        String baseName = FilenameUtils.getBaseName(file.getFileName().toString());
+                        try {
+                            addTagInfo(new PlaylistItem(baseName, file.toAbsolutePath().toString(), -1, true));
+                        } catch (InterruptedException ex) {
+                            throw new CancellationException();
+                        } catch (ExecutionException ex) {
+                            throw new IOException(ex);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                    if (ex instanceof FileSystemLoopException) {
+                        logger.info("Directory loop skipped: {}", file);
                     } else {
-                        pathList.add(p);
+                        logger.error(ex.getMessage(), ex);
                     }
+                    return FileVisitResult.CONTINUE;
                 }
-            } catch (IOException ex) {
-                logger.error(ex.getMessage(), ex);
-            }
+            });
         }
     }
 
@@ -73,6 +73,7 @@ public class PreferencesDialog extends JDialog implements ActionListener {
 //    private JCheckBox instanceCheckBox;
 //    private JCheckBox enqueueCheckBox;
     private JCheckBox updatesCheckBox;
+    private JCheckBox gaplessCheckBox;
     private JTextField cacheDirTextField;
     private JComboBox<String> mixerComboBox;
     private JButton changeCacheDirButton;
@@ -130,6 +131,8 @@ public class PreferencesDialog extends JDialog implements ActionListener {
                             JOptionPane.OK_OPTION, JOptionPane.WARNING_MESSAGE, null, options, options[0]);
                 }
             }
+        } else if (source.equals(gaplessCheckBox)) {
+            Settings.setGaplessPlayback(gaplessCheckBox.isSelected());
         } else if (source.equals(mixerComboBox)) {
             String mixerName = (String) mixerComboBox.getSelectedItem();
             audioPlayer.setMixerName(mixerName);
@@ -244,6 +247,11 @@ public class PreferencesDialog extends JDialog implements ActionListener {
         mixerComboBox.setSelectedItem(Settings.getMixerName());
         mixerComboBox.addActionListener(this);
         audioPanel.add(mixerComboBox, "span,growx");
+        addTextSeparator(audioPanel, tr("Dialog.Preferences.Audio.Playback"));
+        gaplessCheckBox = new JCheckBox(tr("Dialog.Preferences.Audio.Playback.Gapless"));
+        gaplessCheckBox.setSelected(Settings.isGaplessPlayback());
+        gaplessCheckBox.addActionListener(this);
+        audioPanel.add(gaplessCheckBox, "span,growx");
         centerPanel.add(audioPanel, AUDIO_PANEL);
         // hotkeys panel
         JPanel hotkeysPanel = new JPanel(new MigLayout("ins 8,fillx"));
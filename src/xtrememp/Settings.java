@@ -51,12 +51,14 @@ public final class Settings {
     private static final String PROPERTY_PLAYER_AUDIO_PAN = "xtrememp.player.audio.pan";
     private static final String PROPERTY_PLAYER_AUDIO_MUTE = "xtrememp.player.audio.mute";
     private static final String PROPERTY_PLAYER_AUDIO_MIXERNAME = "xtrememp.player.audio.mixer.name";
+    private static final String PROPERTY_PLAYER_AUDIO_GAPLESS = "xtrememp.player.audio.gapless";
     private static final String PROPERTY_EQUILAZER_PRESET_INDEX = "xtrememp.equilazer.preset.index";
     private static final String PROPERTY_LAST_DIR = "xtrememp.last.dir";
     private static final String PROPERTY_LAST_VIEW = "xtrememp.last.view";
     private static final String PROPERTY_PLAYLIST_POSITION = "xtrememp.playlist.position";
     private static final String PROPERTY_PLAYLIST_COLUMNS = "xtrememp.playlist.columns";
     private static final String PROPERTY_PLAYLIST_PLAYMODE = "xtrememp.playlist.playmode";
+    private static final String PROPERTY_PLAYLIST_TAG_THREADS = "xtrememp.playlist.tag.threads";
     private static final String PROPERTY_VISUALIZATION = "xtrememp.visualization";
     private static final String PROPERTY_LANGUAGE_INDEX = "xtrememp.language.index";
     private static final String PROPERTY_GUI_EFFECTS = "xtrememp.gui.effects";
@@ -158,6 +160,20 @@ public final class Settings {
         properties.setProperty(PROPERTY_PLAYLIST_POSITION, Integer.toString(playlistPosition));
     }
 
+    /**
+     * Gets the number of threads reading tag info when files are added to
+     * the playlist.
+     *
+     * @return the number of threads, the number of processors by default
+     */
+    public static int getTagReaderThreads() {
+        return Integer.parseInt(properties.getProperty(PROPERTY_PLAYLIST_TAG_THREADS, Integer.toString(Runtime.getRuntime().availableProcessors())));
+    }
+
+    public static void setTagReaderThreads(int threads) {
+        properties.setProperty(PROPERTY_PLAYLIST_TAG_THREADS, Integer.toString(threads));
+    }
+
     public static PlayMode getPlayMode() {
         return PlayMode.valueOf(properties.getProperty(PROPERTY_PLAYLIST_PLAYMODE, PlayMode.REPEAT_ALL.name()));
     }
@@ -198,6 +214,14 @@ public final class Settings {
         properties.setProperty(PROPERTY_PLAYER_AUDIO_MIXERNAME, mixerName);
     }
 
+    public static boolean isGaplessPlayback() {
+        return Boolean.parseBoolean(properties.getProperty(PROPERTY_PLAYER_AUDIO_GAPLESS, Boolean.toString(true)));
+    }
+
+    public static void setGaplessPlayback(boolean gapless) {
+        properties.setProperty(PROPERTY_PLAYER_AUDIO_GAPLESS, Boolean.toString(gapless));
+    }
+
     public static int getEqualizerPresetIndex() {
         return Integer.parseInt(properties.getProperty(PROPERTY_EQUILAZER_PRESET_INDEX, "0"));
     }
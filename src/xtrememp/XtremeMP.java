@@ -31,6 +31,8 @@ import java.net.URL;
 import java.util.List;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import javax.sound.sampled.AudioSystem;
 import javax.swing.*;
@@ -51,6 +53,7 @@ import xtrememp.player.audio.PlaybackListener;
 import xtrememp.player.audio.PlayerException;
 import xtrememp.playlist.*;
 import xtrememp.tag.TagInfo;
+import xtrememp.tag.TagInfoFactory;
 import xtrememp.ui.button.*;
 import xtrememp.ui.label.BusyLabel;
 import xtrememp.ui.skin.GFXUIListener;
@@ -123,6 +126,9 @@ public final class XtremeMP implements ActionListener, ControlListener,
     private JLabel playModeLabel;
     private SeekSlider seekSlider;
     private PlaylistItem currentPli;
+    private PlaylistItem nextPli;
+    private volatile int nextPliRequest = 0;
+    private final ExecutorService nextPliExecutor = Executors.newSingleThreadExecutor();
 
     private XtremeMP() {
     }
@@ -344,6 +350,8 @@ public final class XtremeMP implements ActionListener, ControlListener,
         } catch (PlaylistException ex) {
             logger.error("Can't save default playlist", ex);
         }
+        TagInfoFactory.getInstance().saveCache();
+        nextPliExecutor.shutdownNow();
         // Release audio engine resources
         audioPlayer.stop();
         // Clean up all resources used by JIntellitype
@@ -718,9 +726,7 @@ public final class XtremeMP implements ActionListener, ControlListener,
                     }
                 }
                 if (isPlaylistFile) {
-                    playlistManager.clearPlaylist();
-                    playlistManager.loadPlaylist(url);
-                    playlist.begin();
+                    playlistManager.openPlaylist(url);
                 } else {
                     PlaylistItem newPli = new PlaylistItem(url, url, -1, false);
                     playlistManager.add(newPli);
@@ -848,27 +854,166 @@ public final class XtremeMP implements ActionListener, ControlListener,
 
     @Override
     public void playbackEndOfMedia(PlaybackEvent pe) {
-        if (playlist.isEmpty()) {
-            acStop();
-        } else {
-            switch (playlist.getPlayMode()) {
-                case REPEAT_NONE:
-                    if (playlist.getCursorPosition() == playlist.size() - 1) {
-                        acStop();
+        // The playlist is confined to the event dispatch thread.
+        EventQueue.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                if (playlist.isEmpty()) {
+                    acStop();
+                } else {
+                    switch (playlist.getPlayMode()) {
+                        case REPEAT_NONE:
+                            if (playlist.getCursorPosition() == playlist.size() - 1) {
+                                acStop();
+                            } else {
+                                acNext();
+                            }
+                            break;
+                        case REPEAT_ONE:
+                            acStop();
+                            acPlayPause();
+                            break;
+                        case REPEAT_ALL:
+                            acNext();
+                            break;
+                        case SHUFFLE:
+                            acNext();
+                            break;
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void playbackNextMedia(PlaybackEvent pe) {
+        final Object dataSource = audioPlayer.getDataSource();
+        final int duration = Math.round(audioPlayer.getDuration() / 1000.0F);
+        EventQueue.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                PlaylistItem pli = nextPli;
+                nextPli = null;
+                if (pli == null || !isDataSource(pli, dataSource)) {
+                    // Dropped after the player switched to it.
+                    pli = null;
+                    for (int i = 0, n = playlist.size(); i < n && pli == null; i++) {
+                        if (isDataSource(playlist.getItemAt(i), dataSource)) {
+                            pli = playlist.getItemAt(i);
+                        }
+                    }
+                    if (pli == null) {
+                        return;
+                    }
+                }
+                if (pli != currentPli) {
+                    if (pli == playlist.peekNextCursor()) {
+                        playlist.nextCursor();
                     } else {
-                        acNext();
+                        playlist.setCursor(pli);
                     }
-                    break;
-                case REPEAT_ONE:
-                    acStop();
-                    acPlayPause();
-                    break;
-                case REPEAT_ALL:
-                    acNext();
-                    break;
-                case SHUFFLE:
-                    acNext();
-                    break;
+                }
+                currentPli = pli;
+                setStatus(currentPli.getFormattedName());
+                seekSlider.reset();
+                playlistManager.colorizeRow();
+                updateSeekSlider(true, duration);
+                openNextItem();
+            }
+        });
+    }
+
+    private static boolean isDataSource(PlaylistItem pli, Object dataSource) {
+        return pli.isFile() && dataSource instanceof File
+                && new File(pli.getLocation()).equals(dataSource);
+    }
+
+    /**
+     * Drops the playlist item opened ahead of time, unless the audio player
+     * already switched to it. Must be called on the event dispatch thread.
+     */
+    private void dropNextItem() {
+        nextPliRequest++;
+        audioPlayer.cancelNext();
+        if (!audioPlayer.isNextPending()) {
+            nextPli = null;
+        }
+    }
+
+    /**
+     * Opens ahead of time the playlist item to play after the current one,
+     * following the play mode, so that the audio player can switch to it
+     * without a gap. The item is chosen on the event dispatch thread and
+     * opened in the background.
+     */
+    private void openNextItem() {
+        dropNextItem();
+        if (nextPli != null) {
+            // A switch is pending, the next item follows it once current.
+            return;
+        }
+        PlaylistItem pli = peekNextItem();
+        if (pli != null) {
+            nextPli = pli;
+            final int request = nextPliRequest;
+            final File file = new File(pli.getLocation());
+            nextPliExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (request != nextPliRequest) {
+                        return;
+                    }
+                    try {
+                        audioPlayer.openNext(file);
+                    } catch (PlayerException ex) {
+                        logger.error(ex.getMessage(), ex);
+                    }
+                    if (request != nextPliRequest) {
+                        // Dropped while opening.
+                        audioPlayer.cancelNext();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the playlist item to open ahead of time after the current one,
+     * following the play mode, or <code>null</code> if there is none.
+     */
+    private PlaylistItem peekNextItem() {
+        if (!Settings.isGaplessPlayback() || currentPli == null || !currentPli.isFile()) {
+            return null;
+        }
+        PlaylistItem pli = null;
+        switch (playlist.getPlayMode()) {
+            case REPEAT_NONE:
+                if (playlist.getCursorPosition() != playlist.size() - 1) {
+                    pli = playlist.peekNextCursor();
+                }
+                break;
+            case REPEAT_ONE:
+                pli = currentPli;
+                break;
+            default:
+                pli = playlist.peekNextCursor();
+                break;
+        }
+        return (pli != null && pli.isFile()) ? pli : null;
+    }
+
+    /**
+     * Opens again the next item after a playlist or play mode change, only
+     * if the change made another item the next one.
+     */
+    private void updateNextItem() {
+        if (peekNextItem() != nextPli) {
+            dropNextItem();
+            if (audioPlayer.getState() == AudioPlayer.PLAY) {
+                openNextItem();
             }
         }
     }
@@ -1055,21 +1200,19 @@ public final class XtremeMP implements ActionListener, ControlListener,
     }
 
     @Override
-    public void playlistItemAdded(PlaylistEvent e) {
-        if (!playlist.isEmpty() && !previousButton.isEnabled()) {
+    public void playlistChanged(PlaylistEvent e) {
+        if (!e.getAddedItems().isEmpty() && !playlist.isEmpty()
+                && !previousButton.isEnabled()) {
             enableControlButtons(true);
         }
-    }
-
-    @Override
-    public void playlistItemRemoved(PlaylistEvent e) {
-        if (playlist.isEmpty()) {
+        if (!e.getRemovedItems().isEmpty() && playlist.isEmpty()) {
             if (audioPlayer.getState() != AudioPlayer.PLAY
                     && audioPlayer.getState() != AudioPlayer.PAUSE) {
                 audioPlayer.stop();
             }
             enableControlButtons(false);
         }
+        updateNextItem();
     }
 
     @Override
@@ -1077,6 +1220,7 @@ public final class XtremeMP implements ActionListener, ControlListener,
         Playlist.PlayMode playMode = playlist.getPlayMode();
 
         Settings.setPlayMode(playMode);
+        updateNextItem();
 
         StringBuilder toolTipMessage = new StringBuilder("<html><b>");
         toolTipMessage.append(tr("MainFrame.Menu.Player.PlayMode"));
@@ -1159,6 +1303,20 @@ public final class XtremeMP implements ActionListener, ControlListener,
         }
     }
 
+    private void updateSeekSlider(boolean isFile, int duration) {
+        if (isFile) {
+            if (duration > 0) {
+                seekSlider.setMaximum(duration);
+                seekSlider.setEnabled(true);
+            } else {
+                seekSlider.setMaximum((int) (currentPli.getDuration() * 1000));
+                seekSlider.setEnabled(false);
+            }
+        } else {
+            seekSlider.setEnabled(false);
+        }
+    }
+
     private class PlayerLauncher extends AbstractSwingWorker<Boolean, Void> {
 
         private boolean play = false;
@@ -1167,6 +1325,7 @@ public final class XtremeMP implements ActionListener, ControlListener,
 
         public PlayerLauncher(boolean play) {
             this.play = play;
+            dropNextItem();
         }
 
         @Override
@@ -1197,17 +1356,8 @@ public final class XtremeMP implements ActionListener, ControlListener,
                     if (get()) {
                         seekSlider.reset();
                         playlistManager.colorizeRow();
-                        if (isFile) {
-                            if (duration > 0) {
-                                seekSlider.setMaximum(duration);
-                                seekSlider.setEnabled(true);
-                            } else {
-                                seekSlider.setMaximum((int) (currentPli.getDuration() * 1000));
-                                seekSlider.setEnabled(false);
-                            }
-                        } else {
-                            seekSlider.setEnabled(false);
-                        }
+                        updateSeekSlider(isFile, duration);
+                        openNextItem();
                     }
                 } catch (InterruptedException | ExecutionException ex) {
                     if (ex.getCause() instanceof PlayerException) {
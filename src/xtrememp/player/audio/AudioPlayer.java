@@ -21,8 +21,6 @@ package xtrememp.player.audio;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -32,7 +30,11 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -69,7 +71,7 @@ public class AudioPlayer implements Callable<Void> {
     protected final int READ_BUFFER_SIZE = 4 * 1024;
     protected final Lock lock = new ReentrantLock();
     protected final Condition pauseCondition = lock.newCondition();
-    protected Object audioSource;
+    protected volatile Object audioSource;
     protected DigitalSignalSynchronizer dss;
     protected AudioFileFormat audioFileFormat;
     protected AudioInputStream audioInputStream;
@@ -77,12 +79,27 @@ public class AudioPlayer implements Callable<Void> {
     protected String mixerName;
     protected List<PlaybackListener> listeners;
     protected ExecutorService execService;
+    protected ExecutorService lineWriterExecService;
+    protected ExecutorService eventExecService;
     protected Future<Void> future;
+    protected Future<Void> lineWriterFuture;
+    protected AudioRingBuffer ringBuffer;
+    protected int ringBufferSize = AudioSystem.NOT_SPECIFIED;
+    protected int prefillSize = AudioSystem.NOT_SPECIFIED;
+    protected volatile boolean lineWriterRunning = false;
+    protected volatile boolean prefilling = true;
+    protected volatile boolean endOfStream = false;
+    protected volatile boolean lineWriting = false;
+    protected volatile Thread decoderThread;
+    protected volatile Thread lineWriterThread;
+    protected volatile long bufferUnderruns = 0;
+    protected volatile long lineUnderruns = 0;
     protected Map<String, Object> properties;
     protected FloatControl gainControl;
     protected FloatControl panControl;
     protected BooleanControl muteControl;
     protected int bufferSize = AudioSystem.NOT_SPECIFIED;
+    protected int readBufferSize = AudioSystem.NOT_SPECIFIED;
     public static final int INIT = 0;
     public static final int PLAY = 1;
     public static final int PAUSE = 2;
@@ -91,11 +108,26 @@ public class AudioPlayer implements Callable<Void> {
     protected volatile int state = AudioSystem.NOT_SPECIFIED;
     protected Map<String, Object> emptyMap = new HashMap<String, Object>();
     protected long oldPosition = 0;
+    protected long progressInterval = 1000000000L / 20;
+    protected long lastProgressTime = 0;
+    protected volatile long progressPosition = 0;
+    protected final Map<String, Object> progressProperties = new HashMap<String, Object>();
+    protected final Lock progressLock = new ReentrantLock();
+    protected Object progressSource;
+    protected final AtomicBoolean progressPending = new AtomicBoolean();
+    protected Runnable progressLauncher;
+    protected final AtomicReference<NextMedia> nextMedia = new AtomicReference<NextMedia>();
+    protected volatile NextMedia pendingMedia;
+    protected long pendingPosition = 0;
+    protected volatile int[] equalizerGains;
 
     public AudioPlayer() {
         execService = Executors.newFixedThreadPool(1);
+        lineWriterExecService = Executors.newFixedThreadPool(1);
+        eventExecService = Executors.newSingleThreadExecutor();
         dss = new DigitalSignalSynchronizer();
-        listeners = new ArrayList<PlaybackListener>();
+        listeners = new CopyOnWriteArrayList<PlaybackListener>();
+        progressLauncher = new ProgressLauncher();
         reset();
     }
 
@@ -120,15 +152,58 @@ public class AudioPlayer implements Callable<Void> {
     }
 
     protected void notifyEvent(Playback state, Map properties) {
-        for (PlaybackListener listener : listeners) {
-            PlaybackEventLauncher launcher = new PlaybackEventLauncher(this, 
-                    state, getPosition() - oldPosition, properties, listener);
-            launcher.start();
-        }
+        PlaybackEvent pe = new PlaybackEvent(this, state, getPosition() - oldPosition, properties);
+        eventExecService.execute(new PlaybackEventLauncher(pe, listeners));
         logger.info("{}", state);
     }
 
+    /**
+     * Notifies the playback progress, at most at the progress event rate.
+     * Called by the decoding thread only.
+     */
+    @SuppressWarnings("unchecked")
+    protected void notifyProgress() {
+        long now = System.nanoTime();
+        if (now - lastProgressTime >= progressInterval && progressLock.tryLock()) {
+            // The snapshot is skipped if it is being delivered.
+            try {
+                lastProgressTime = now;
+                progressPosition = getPosition() - oldPosition;
+                if (progressSource != audioInputStream) {
+                    progressSource = audioInputStream;
+                    progressProperties.clear();
+                }
+                if (audioInputStream instanceof PropertiesContainer) {
+                    // Pass audio parameters such as instant bitrate, ...
+                    // Existing keys are updated in place.
+                    progressProperties.putAll(((PropertiesContainer) audioInputStream).properties());
+                }
+            } finally {
+                progressLock.unlock();
+            }
+            // Coalesce with a progress event not yet delivered.
+            if (progressPending.compareAndSet(false, true)) {
+                eventExecService.execute(progressLauncher);
+            }
+        }
+    }
+
+    /**
+     * Sets how many progress events per second are delivered at most.
+     * @param rate if less or equal to 0, an event is delivered for every
+     * buffer written.
+     */
+    public void setProgressEventRate(int rate) {
+        progressInterval = (rate <= 0) ? 0 : 1000000000L / rate;
+    }
+
+    public int getProgressEventRate() {
+        return (progressInterval <= 0) ? 0 : (int) (1000000000L / progressInterval);
+    }
+
     private void reset() {
+        closeNextStream();
+        pendingMedia = null;
         if (sourceDataLine != null) {
             sourceDataLine.flush();
             sourceDataLine.close();
@@ -194,7 +269,6 @@ public class AudioPlayer implements Callable<Void> {
      * Inits AudioInputStream and AudioFileFormat from the data source.
      * @throws PlayerException
      */
-    @SuppressWarnings("unchecked")
     protected void initAudioInputStream() throws PlayerException {
         // Close any previous opened audio stream before creating a new one.
         closeStream();
@@ -206,65 +280,8 @@ public class AudioPlayer implements Callable<Void> {
                 } else if (audioSource instanceof URL) {
                     initAudioInputStream((URL) audioSource);
                 }
-                AudioFormat sourceAudioFormat = audioInputStream.getFormat();
-                logger.info("Source format: {}", sourceAudioFormat);
-                int nSampleSizeInBits = sourceAudioFormat.getSampleSizeInBits();
-                if (nSampleSizeInBits <= 0) {
-                    nSampleSizeInBits = 16;
-                }
-                if ((sourceAudioFormat.getEncoding() == AudioFormat.Encoding.ULAW) || (sourceAudioFormat.getEncoding() == AudioFormat.Encoding.ALAW)) {
-                    nSampleSizeInBits = 16;
-                }
-                if (nSampleSizeInBits != 8) {
-                    nSampleSizeInBits = 16;
-                }
-                AudioFormat targetAudioFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceAudioFormat.getSampleRate(), nSampleSizeInBits, sourceAudioFormat.getChannels(), sourceAudioFormat.getChannels() * (nSampleSizeInBits / 8), sourceAudioFormat.getSampleRate(), false);
-                logger.info("Target format: {}", targetAudioFormat);
-                // Create decoded stream.
-                audioInputStream = AudioSystem.getAudioInputStream(targetAudioFormat, audioInputStream);
-                if (audioFileFormat instanceof TAudioFileFormat) {
-                    // Tritonus SPI compliant audio file format.
-                    properties = ((TAudioFileFormat) audioFileFormat).properties();
-                    // Clone the Map because it is not mutable.
-                    properties = deepCopy(properties);
-                } else {
-                    properties = new HashMap<String, Object>();
-                }
-                // Add JavaSound properties.
-                if (audioFileFormat.getByteLength() > 0) {
-                    properties.put("audio.length.bytes", 
-                            Integer.valueOf(audioFileFormat.getByteLength()));
-                }
-                if (audioFileFormat.getFrameLength() > 0) {
-                    properties.put("audio.length.frames", Integer.valueOf(audioFileFormat.getFrameLength()));
-                }
-                if (audioFileFormat.getType() != null) {
-                    properties.put("audio.type", audioFileFormat.getType().toString());
-                }
-                // Audio format.
-                AudioFormat audioFormat = audioFileFormat.getFormat();
-                if (audioFormat.getFrameRate() > 0) {
-                    properties.put("audio.framerate.fps", new Float(audioFormat.getFrameRate()));
-                }
-                if (audioFormat.getFrameSize() > 0) {
-                    properties.put("audio.framesize.bytes", Integer.valueOf(audioFormat.getFrameSize()));
-                }
-                if (audioFormat.getSampleRate() > 0) {
-                    properties.put("audio.samplerate.hz", new Float(audioFormat.getSampleRate()));
-                }
-                if (audioFormat.getSampleSizeInBits() > 0) {
-                    properties.put("audio.samplesize.bits", Integer.valueOf(audioFormat.getSampleSizeInBits()));
-                }
-                if (audioFormat.getChannels() > 0) {
-                    properties.put("audio.channels", Integer.valueOf(audioFormat.getChannels()));
-                }
-                if (audioFormat instanceof TAudioFormat) {
-                    // Tritonus SPI compliant audio format.
-                    properties.putAll(((TAudioFormat) audioFormat).properties());
-                }
-                for (String key : properties.keySet()) {
-                    logger.info("Audio Format Properties: {} = {}", key, properties.get(key));
-                }
+                audioInputStream = getDecodedAudioInputStream(audioInputStream);
+                properties = getAudioProperties(audioFileFormat);
             } catch (UnsupportedAudioFileException ex) {
                 throw new PlayerException(ex);
             } catch (IOException ex) {
@@ -273,6 +290,86 @@ public class AudioPlayer implements Callable<Void> {
         }
     }
 
+    /**
+     * Creates the PCM stream decoded from the given source stream.
+     * @param sourceAudioInputStream
+     * @return the decoded stream
+     */
+    protected AudioInputStream getDecodedAudioInputStream(AudioInputStream sourceAudioInputStream) {
+        AudioFormat sourceAudioFormat = sourceAudioInputStream.getFormat();
+        logger.info("Source format: {}", sourceAudioFormat);
+        int nSampleSizeInBits = sourceAudioFormat.getSampleSizeInBits();
+        if (nSampleSizeInBits <= 0) {
+            nSampleSizeInBits = 16;
+        }
+        if ((sourceAudioFormat.getEncoding() == AudioFormat.Encoding.ULAW) || (sourceAudioFormat.getEncoding() == AudioFormat.Encoding.ALAW)) {
+            nSampleSizeInBits = 16;
+        }
+        if (nSampleSizeInBits != 8) {
+            nSampleSizeInBits = 16;
+        }
+        AudioFormat targetAudioFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceAudioFormat.getSampleRate(), nSampleSizeInBits, sourceAudioFormat.getChannels(), sourceAudioFormat.getChannels() * (nSampleSizeInBits / 8), sourceAudioFormat.getSampleRate(), false);
+        logger.info("Target format: {}", targetAudioFormat);
+        // Create decoded stream.
+        EqAudioInputStream eqAudioInputStream = new EqAudioInputStream(AudioSystem.getAudioInputStream(targetAudioFormat, sourceAudioInputStream));
+        eqAudioInputStream.setGains(equalizerGains);
+        return eqAudioInputStream;
+    }
+
+    /**
+     * Collects the properties of the given audio file format.
+     * @param audioFileFormat
+     * @return a mutable map of properties
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object> getAudioProperties(AudioFileFormat audioFileFormat) {
+        Map<String, Object> audioProperties;
+        if (audioFileFormat instanceof TAudioFileFormat) {
+            // Tritonus SPI compliant audio file format.
+            audioProperties = ((TAudioFileFormat) audioFileFormat).properties();
+            // Clone the Map because it is not mutable.
+            audioProperties = deepCopy(audioProperties);
+        } else {
+            audioProperties = new HashMap<String, Object>();
+        }
+        // Add JavaSound properties.
+        if (audioFileFormat.getByteLength() > 0) {
+            audioProperties.put("audio.length.bytes", 
+                    Integer.valueOf(audioFileFormat.getByteLength()));
+        }
+        if (audioFileFormat.getFrameLength() > 0) {
+            audioProperties.put("audio.length.frames", Integer.valueOf(audioFileFormat.getFrameLength()));
+        }
+        if (audioFileFormat.getType() != null) {
+            audioProperties.put("audio.type", audioFileFormat.getType().toString());
+        }
+        // Audio format.
+        AudioFormat audioFormat = audioFileFormat.getFormat();
+        if (audioFormat.getFrameRate() > 0) {
+            audioProperties.put("audio.framerate.fps", new Float(audioFormat.getFrameRate()));
+        }
+        if (audioFormat.getFrameSize() > 0) {
+            audioProperties.put("audio.framesize.bytes", Integer.valueOf(audioFormat.getFrameSize()));
+        }
+        if (audioFormat.getSampleRate() > 0) {
+            audioProperties.put("audio.samplerate.hz", new Float(audioFormat.getSampleRate()));
+        }
+        if (audioFormat.getSampleSizeInBits() > 0) {
+            audioProperties.put("audio.samplesize.bits", Integer.valueOf(audioFormat.getSampleSizeInBits()));
+        }
+        if (audioFormat.getChannels() > 0) {
+            audioProperties.put("audio.channels", Integer.valueOf(audioFormat.getChannels()));
+        }
+        if (audioFormat instanceof TAudioFormat) {
+            // Tritonus SPI compliant audio format.
+            audioProperties.putAll(((TAudioFormat) audioFormat).properties());
+        }
+        for (String key : audioProperties.keySet()) {
+            logger.info("Audio Format Properties: {} = {}", key, audioProperties.get(key));
+        }
+        return audioProperties;
+    }
+
     /**
      * Inits Audio resources from file.
      * @param file
@@ -295,6 +392,113 @@ public class AudioPlayer implements Callable<Void> {
         audioFileFormat = AudioSystem.getAudioFileFormat(url);
     }
 
+    /**
+     * Opens the file to play after the current one. In gapless playback its
+     * decoded stream is written into the same line as soon as the current
+     * stream ends, provided both share the same audio format.
+     * @param file
+     * @throws PlayerException
+     */
+    public void openNext(File file) throws PlayerException {
+        if (file != null) {
+            try {
+                NextMedia media = new NextMedia(file, AudioSystem.getAudioFileFormat(file));
+                media.audioInputStream = getDecodedAudioInputStream(AudioSystem.getAudioInputStream(file));
+                media.properties = getAudioProperties(media.audioFileFormat);
+                closeNextStream(nextMedia.getAndSet(media));
+                logger.info("Next data source: {}", file);
+            } catch (UnsupportedAudioFileException ex) {
+                throw new PlayerException(ex);
+            } catch (IOException ex) {
+                throw new PlayerException(ex);
+            }
+        }
+    }
+
+    /**
+     * Switches to the stream opened with openNext when the current stream
+     * ends. The track boundary is notified when the line reaches it.
+     * @return true if the stream was switched
+     */
+    protected boolean initNextAudioInputStream() {
+        NextMedia media = nextMedia.getAndSet(null);
+        if (media == null) {
+            return false;
+        }
+        AudioFormat lineFormat = sourceDataLine.getFormat();
+        if (!media.audioInputStream.getFormat().matches(lineFormat)) {
+            logger.info("Next format differs from the line format: {}", media.audioInputStream.getFormat());
+            closeNextStream(media);
+            return false;
+        }
+        closeStream();
+        audioInputStream = media.audioInputStream;
+        pendingMedia = media;
+        // The next media starts playing once the buffered data has been played.
+        int bufferedFrames = (sourceDataLine.getBufferSize() - sourceDataLine.available() + ringBuffer.available()) / lineFormat.getFrameSize();
+        pendingPosition = getPosition() + (long) (bufferedFrames * 1000000.0 / lineFormat.getFrameRate());
+        return true;
+    }
+
+    /**
+     * Makes the next media current once the line has played past the
+     * track boundary.
+     * @param force if true the boundary is assumed to be reached
+     */
+    protected void checkPendingMedia(boolean force) {
+        if (pendingMedia != null && (force || getPosition() >= pendingPosition)) {
+            audioSource = pendingMedia.audioSource;
+            audioFileFormat = pendingMedia.audioFileFormat;
+            properties = pendingMedia.properties;
+            oldPosition = pendingPosition;
+            pendingMedia = null;
+            notifyEvent(Playback.NEXT_MEDIA, properties);
+        }
+    }
+
+    /**
+     * Closes the stream opened with openNext, unless the player already
+     * switched to it.
+     * @return true if a stream was closed
+     */
+    public boolean cancelNext() {
+        NextMedia media = nextMedia.getAndSet(null);
+        closeNextStream(media);
+        return media != null;
+    }
+
+    /**
+     * Checks if the player switched to the stream opened with openNext and
+     * is playing the data buffered before the track boundary.
+     * @return true if the next media is about to become current
+     */
+    public boolean isNextPending() {
+        return pendingMedia != null;
+    }
+
+    /**
+     * Returns the file or URL being played, which changes at each track
+     * boundary in gapless playback.
+     * @return the current data source
+     */
+    public Object getDataSource() {
+        return audioSource;
+    }
+
+    protected void closeNextStream() {
+        closeNextStream(nextMedia.getAndSet(null));
+    }
+
+    private void closeNextStream(NextMedia media) {
+        if (media != null && media.audioInputStream != null) {
+            try {
+                media.audioInputStream.close();
+            } catch (IOException ex) {
+                logger.error("Cannot close next stream", ex);
+            }
+        }
+    }
+
     /**
      * Inits Audio resources from AudioSystem.
      * @throws PlayerException
@@ -333,6 +537,13 @@ public class AudioPlayer implements Callable<Void> {
                 sourceDataLine.open(audioFormat, bufferSize);
 
                 logger.info("Line BufferSize: {}", sourceDataLine.getBufferSize());
+                int ringSize = ringBufferSize;
+                if (ringSize <= 0) {
+                    ringSize = Math.max(2 * sourceDataLine.getBufferSize(), 64 * 1024);
+                }
+                ringBuffer = new AudioRingBuffer(ringSize);
+                prefilling = true;
+                logger.info("Ring BufferSize: {}", ringBuffer.getCapacity());
                 for (Control c : sourceDataLine.getControls()) {
                     logger.info("Line Controls: {}", c);
                 }
@@ -378,6 +589,90 @@ public class AudioPlayer implements Callable<Void> {
         return bufferSize;
     }
 
+    /**
+     * Set the size of the buffer read from the decoder at once.
+     * @param readBufferSize if equal to -1 (AudioSystem.NOT_SPECIFIED)
+     * means a quarter of the line buffer size.
+     */
+    public void setReadBufferSize(int readBufferSize) {
+        if (readBufferSize <= 0) {
+            this.readBufferSize = AudioSystem.NOT_SPECIFIED;
+        } else {
+            this.readBufferSize = readBufferSize;
+        }
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    /**
+     * Returns the read buffer size to use with the current line, a whole
+     * number of frames that fits in the ring buffer.
+     */
+    protected int getLineReadBufferSize() {
+        int size = readBufferSize;
+        if (size <= 0) {
+            size = Math.max(sourceDataLine.getBufferSize() / 4, READ_BUFFER_SIZE);
+        }
+        size = Math.min(size, ringBuffer.getCapacity() / 2);
+        int frameSize = sourceDataLine.getFormat().getFrameSize();
+        if (frameSize > 0) {
+            size = Math.max(size - size % frameSize, frameSize);
+        }
+        return size;
+    }
+
+    /**
+     * Set the size of the ring buffer between the decoder and the line.
+     * @param ringBufferSize if equal to -1 (AudioSystem.NOT_SPECIFIED)
+     * means twice the line buffer size.
+     */
+    public void setRingBufferSize(int ringBufferSize) {
+        if (ringBufferSize <= 0) {
+            this.ringBufferSize = AudioSystem.NOT_SPECIFIED;
+        } else {
+            this.ringBufferSize = ringBufferSize;
+        }
+    }
+
+    public int getRingBufferSize() {
+        return ringBufferSize;
+    }
+
+    /**
+     * Set the amount of decoded data buffered before the line is fed, at
+     * start, after a seek and after an underrun.
+     * @param prefillSize if equal to -1 (AudioSystem.NOT_SPECIFIED)
+     * means half of the ring buffer.
+     */
+    public void setPrefillSize(int prefillSize) {
+        if (prefillSize <= 0) {
+            this.prefillSize = AudioSystem.NOT_SPECIFIED;
+        } else {
+            this.prefillSize = prefillSize;
+        }
+    }
+
+    public int getPrefillSize() {
+        return prefillSize;
+    }
+
+    /**
+     * Returns how many times the ring buffer ran empty while playing.
+     */
+    public long getBufferUnderruns() {
+        return bufferUnderruns;
+    }
+
+    /**
+     * Returns how many times the line ran out of data while playing,
+     * which is heard as a glitch.
+     */
+    public long getLineUnderruns() {
+        return lineUnderruns;
+    }
+
     /**
      * Deep copy of a Map.
      * @param src
@@ -534,6 +829,28 @@ public class AudioPlayer implements Callable<Void> {
         return gain;
     }
 
+    /**
+     * Sets the equalizer gains, applied to the current stream and to the
+     * streams opened afterwards.
+     * @param gains the gain of each band in dB, between -12 and +12, or null
+     * to bypass the equalizer
+     */
+    public void setEqualizer(int[] gains) {
+        equalizerGains = (gains != null) ? gains.clone() : null;
+        if (audioInputStream instanceof EqAudioInputStream) {
+            ((EqAudioInputStream) audioInputStream).setGains(equalizerGains);
+        }
+        NextMedia media = nextMedia.get();
+        if (media != null && media.audioInputStream instanceof EqAudioInputStream) {
+            ((EqAudioInputStream) media.audioInputStream).setGains(equalizerGains);
+        }
+    }
+
+    public int[] getEqualizer() {
+        int[] gains = equalizerGains;
+        return (gains != null) ? gains.clone() : null;
+    }
+
     /**
      * Sets Pan value.
      * @param pan a value bitween -1.0 and +1.0
@@ -598,36 +915,43 @@ public class AudioPlayer implements Callable<Void> {
     public Void call() throws PlayerException {
         logger.info("Decoding thread started");
         int nBytesRead = 0;
-        int audioDataLength = READ_BUFFER_SIZE;
-        ByteBuffer audioDataBuffer = ByteBuffer.allocate(audioDataLength);
-        audioDataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        int audioDataLength = getLineReadBufferSize();
+        byte[] audioData = new byte[audioDataLength];
+        boolean played = false;
         lock.lock();
         try {
-            while ((nBytesRead != -1) && (state != STOP) && (state != SEEK) && (state != AudioSystem.NOT_SPECIFIED)) {
+            startLineWriter();
+            while ((state != STOP) && (state != SEEK) && (state != AudioSystem.NOT_SPECIFIED)) {
                 try {
-                    if (state == PLAY) {
+                    if (state == PLAY && endOfStream) {
+                        // Wait for the line writer to play the buffered
+                        // tail. A pause waits below, a seek decodes again.
+                        if (isLineWriterDrained()) {
+                            played = true;
+                            break;
+                        }
+                        decoderThread = Thread.currentThread();
+                        LockSupport.parkNanos(this, 10000000L);
+                        decoderThread = null;
+                    } else if (state == PLAY) {
                         int toRead = audioDataLength;
                         int totalRead = 0;
-                        while (toRead > 0 && (nBytesRead = audioInputStream.read(audioDataBuffer.array(), totalRead, toRead)) != -1) {
+                        while (toRead > 0 && (nBytesRead = audioInputStream.read(audioData, totalRead, toRead)) != -1) {
                             totalRead += nBytesRead;
                             toRead -= nBytesRead;
                         }
+                        if (nBytesRead == -1 && initNextAudioInputStream()) {
+                            // Gapless: keep feeding the line from the next stream.
+                            nBytesRead = 0;
+                        }
                         if (totalRead > 0) {
-                            byte[] trimBuffer = audioDataBuffer.array();
-                            if (totalRead < trimBuffer.length) {
-                                trimBuffer = new byte[totalRead];
-                                System.arraycopy(audioDataBuffer.array(), 0, trimBuffer, 0, totalRead);
-                            }
-                            sourceDataLine.write(trimBuffer, 0, totalRead);
-                            dss.writeAudioData(trimBuffer, 0, totalRead);
-                            for (PlaybackListener pl : listeners) {
-                                PlaybackEvent pe = new PlaybackEvent(this, Playback.PLAYING, getPosition() - oldPosition, emptyMap);
-                                if (audioInputStream instanceof PropertiesContainer) {
-                                    // Pass audio parameters such as instant bitrate, ...
-                                    pe.setProperties(((PropertiesContainer) audioInputStream).properties());
-                                }
-                                pl.playbackProgress(pe);
-                            }
+                            writeAudioData(audioData, 0, totalRead);
+                            checkPendingMedia(false);
+                            notifyProgress();
+                        }
+                        if (nBytesRead == -1) {
+                            endOfStream = true;
+                            LockSupport.unpark(lineWriterThread);
                         }
                     } else if (state == INIT || state == PAUSE) {
                         if (sourceDataLine != null && sourceDataLine.isRunning()) {
@@ -643,23 +967,148 @@ public class AudioPlayer implements Callable<Void> {
                     throw new PlayerException(ex);
                 }
             }
+            if (played && sourceDataLine != null) {
+                // Play the tail of the media left in the line.
+                sourceDataLine.drain();
+                checkPendingMedia(true);
+            }
+            stopLineWriter();
             if (sourceDataLine != null) {
                 sourceDataLine.flush();
                 sourceDataLine.stop();
                 sourceDataLine.close();
                 sourceDataLine = null;
             }
+            pendingMedia = null;
             closeStream();
-            if (nBytesRead == -1) {
+            if (played) {
                 notifyEvent(Playback.EOM);
             }
         } finally {
+            stopLineWriter();
             lock.unlock();
         }
         logger.info("Decoding thread completed");
         return null;
     }
 
+    /**
+     * Writes decoded data into the ring buffer, waiting for free space while
+     * playing. Called by the decoding thread only.
+     */
+    protected void writeAudioData(byte[] b, int off, int len) {
+        while (len > 0 && state == PLAY && lineWriterRunning) {
+            int n = ringBuffer.write(b, off, len);
+            if (n > 0) {
+                off += n;
+                len -= n;
+                LockSupport.unpark(lineWriterThread);
+            } else {
+                decoderThread = Thread.currentThread();
+                if (ringBuffer.free() == 0) {
+                    LockSupport.parkNanos(this, 10000000L);
+                }
+                decoderThread = null;
+            }
+        }
+    }
+
+    protected void startLineWriter() {
+        endOfStream = false;
+        lineWriterRunning = true;
+        lineWriterFuture = lineWriterExecService.submit(new LineWriter());
+    }
+
+    /**
+     * Checks if the line writer has written all the ring buffer data to the
+     * line, including the last bytes it read.
+     */
+    protected boolean isLineWriterDrained() {
+        return (ringBuffer.available() == 0 && !lineWriting) || !lineWriterRunning;
+    }
+
+    protected void stopLineWriter() {
+        if (lineWriterFuture != null) {
+            lineWriterRunning = false;
+            LockSupport.unpark(lineWriterThread);
+            if (sourceDataLine != null) {
+                // Release a pending write.
+                sourceDataLine.flush();
+            }
+            try {
+                lineWriterFuture.get();
+            } catch (InterruptedException ex) {
+                logger.error(ex.getMessage(), ex);
+            } catch (ExecutionException ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+            lineWriterFuture = null;
+            if (bufferUnderruns > 0 || lineUnderruns > 0) {
+                logger.info("Underruns: buffer {}, line {}", bufferUnderruns, lineUnderruns);
+            }
+        }
+    }
+
+    /**
+     * Feeds the line from the ring buffer, so that a slow decode never
+     * blocks the line and a blocking line write never stalls the decoder.
+     */
+    protected class LineWriter implements Callable<Void> {
+
+        @Override
+        public Void call() {
+            lineWriterThread = Thread.currentThread();
+            byte[] buffer = new byte[getLineReadBufferSize()];
+            boolean wasEmpty = false;
+            try {
+                while (lineWriterRunning) {
+                    if (state != PLAY) {
+                        LockSupport.parkNanos(this, 10000000L);
+                        continue;
+                    }
+                    // Free the space of the data cleared by a seek.
+                    ringBuffer.skipCleared();
+                    if (prefilling) {
+                        int watermark = prefillSize;
+                        if (watermark <= 0 || watermark > ringBuffer.getCapacity()) {
+                            watermark = ringBuffer.getCapacity() / 2;
+                        }
+                        if (ringBuffer.available() < watermark && !endOfStream) {
+                            LockSupport.parkNanos(this, 1000000L);
+                            continue;
+                        }
+                        prefilling = false;
+                    }
+                    lineWriting = true;
+                    int n = ringBuffer.read(buffer, 0, buffer.length);
+                    if (n > 0) {
+                        LockSupport.unpark(decoderThread);
+                        if (wasEmpty && sourceDataLine.available() >= sourceDataLine.getBufferSize()) {
+                            lineUnderruns++;
+                        }
+                        wasEmpty = false;
+                        sourceDataLine.write(buffer, 0, n);
+                        dss.writeAudioData(buffer, 0, n);
+                        lineWriting = false;
+                    } else if (endOfStream) {
+                        lineWriting = false;
+                        LockSupport.parkNanos(this, 10000000L);
+                    } else {
+                        lineWriting = false;
+                        // Rebuffer up to the watermark.
+                        bufferUnderruns++;
+                        wasEmpty = true;
+                        prefilling = true;
+                    }
+                }
+            } finally {
+                lineWriting = false;
+                lineWriterThread = null;
+            }
+            return null;
+        }
+    }
+
     private void awaitTermination() {
         if (future != null && !future.isDone()) {
             try {
@@ -688,6 +1137,7 @@ public class AudioPlayer implements Callable<Void> {
                     }
                     state = PLAY;
                     pauseCondition.signal();
+                    LockSupport.unpark(lineWriterThread);
                     notifyEvent(Playback.PLAYING);
                     break;
             }
@@ -718,6 +1168,7 @@ public class AudioPlayer implements Callable<Void> {
                 }
             }
             awaitTermination();
+            closeNextStream();
             notifyEvent(Playback.STOPPED);
         }
     }
@@ -738,6 +1189,13 @@ public class AudioPlayer implements Callable<Void> {
             }
             lock.lock();
             try {
+                pendingMedia = null;
+                if (ringBuffer != null) {
+                    ringBuffer.clear();
+                    prefilling = true;
+                }
+                // Decode again from the new position, if it had ended.
+                endOfStream = false;
                 notifyEvent(Playback.SEEKING);
                 initAudioInputStream();
                 if (audioInputStream != null) {
@@ -768,6 +1226,44 @@ public class AudioPlayer implements Callable<Void> {
         return totalSkipped;
     }
 
+    /**
+     * Delivers the latest progress snapshot. Each event gets its own copy of
+     * the properties, so that listeners may keep it, e.g. to use it on the
+     * event dispatch thread; events are coalesced, so this is cheap.
+     */
+    protected class ProgressLauncher implements Runnable {
+
+        @Override
+        public void run() {
+            progressPending.set(false);
+            PlaybackEvent event;
+            progressLock.lock();
+            try {
+                event = new PlaybackEvent(AudioPlayer.this, Playback.PLAYING, progressPosition,
+                        new HashMap<String, Object>(progressProperties));
+            } finally {
+                progressLock.unlock();
+            }
+            new PlaybackEventLauncher(event, listeners, true).run();
+        }
+    }
+
+    /**
+     * Media opened ahead of time for gapless playback.
+     */
+    protected static class NextMedia {
+
+        protected Object audioSource;
+        protected AudioFileFormat audioFileFormat;
+        protected AudioInputStream audioInputStream;
+        protected Map<String, Object> properties;
+
+        protected NextMedia(Object audioSource, AudioFileFormat audioFileFormat) {
+            this.audioSource = audioSource;
+            this.audioFileFormat = audioFileFormat;
+        }
+    }
+
     protected void closeStream() {
         if (audioInputStream != null) {
             try {
@@ -0,0 +1,129 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.player.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free byte ring buffer for exactly one producer thread and one
+ * consumer thread. Positions grow monotonically and are published with
+ * ordered writes, so neither side ever blocks the other. The read position
+ * is only written by the consumer, so the producer never writes over bytes
+ * the consumer may still be copying.
+ *
+ * @author Besmir Beqiri
+ */
+public class AudioRingBuffer {
+
+    private final byte[] buffer;
+    private final int mask;
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+    private volatile long clearPosition = 0;
+
+    /**
+     * Creates a ring buffer.
+     * @param size the minimum capacity in bytes, rounded up to a power of two
+     */
+    public AudioRingBuffer(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        buffer = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Returns the number of bytes that can be read.
+     */
+    public int available() {
+        long r = Math.max(readPosition.get(), clearPosition);
+        return (int) (writePosition.get() - r);
+    }
+
+    /**
+     * Returns the number of bytes that can be written.
+     */
+    public int free() {
+        long r = readPosition.get();
+        return buffer.length - (int) (writePosition.get() - r);
+    }
+
+    /**
+     * Writes up to len bytes without blocking. Producer thread only.
+     * @return the number of bytes written
+     */
+    public int write(byte[] b, int off, int len) {
+        long w = writePosition.get();
+        long r = readPosition.get();
+        int n = Math.min(len, buffer.length - (int) (w - r));
+        if (n <= 0) {
+            return 0;
+        }
+        int index = (int) w & mask;
+        int first = Math.min(n, buffer.length - index);
+        System.arraycopy(b, off, buffer, index, first);
+        System.arraycopy(b, off + first, buffer, 0, n - first);
+        writePosition.lazySet(w + n);
+        return n;
+    }
+
+    /**
+     * Reads up to len bytes without blocking. Consumer thread only.
+     * @return the number of bytes read
+     */
+    public int read(byte[] b, int off, int len) {
+        long r = Math.max(readPosition.get(), clearPosition);
+        int n = Math.min(len, (int) (writePosition.get() - r));
+        if (n > 0) {
+            int index = (int) r & mask;
+            int first = Math.min(n, buffer.length - index);
+            System.arraycopy(buffer, index, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, n - first);
+        } else {
+            n = 0;
+        }
+        readPosition.lazySet(r + n);
+        return n;
+    }
+
+    /**
+     * Skips the data discarded by {@link #clear()}, making its space free
+     * for the producer. Consumer thread only; {@link #read} does it too.
+     */
+    public void skipCleared() {
+        long c = clearPosition;
+        if (c > readPosition.get()) {
+            readPosition.lazySet(c);
+        }
+    }
+
+    /**
+     * Discards the data written so far. It may be called from any thread
+     * while the producer is idle. It only posts the clear position: the
+     * consumer skips the data on its next read or {@link #skipCleared()},
+     * and only then may the producer write over it, since the consumer may
+     * be copying it meanwhile.
+     */
+    public void clear() {
+        clearPosition = writePosition.get();
+    }
+}
@@ -19,36 +19,47 @@
 package xtrememp.player.audio;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
+import javazoom.spi.PropertiesContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.tritonus.share.sampled.convert.TAsynchronousFilteredAudioInputStream;
 
 /**
+ * Ten band equalizer applied in place to signed 8 or 16-bit PCM data.
+ * The filter coefficients are computed from the sample rate of the stream
+ * and each channel keeps its own filter state. When all the gains are flat
+ * the data is passed through untouched.
+ *
  * Based on original work of Martin Holtzer, licensed under the GPL.
  *
  * @author alexs
  * @author Besmir Beqiri
  */
-public class EqAudioInputStream extends TAsynchronousFilteredAudioInputStream {
+public class EqAudioInputStream extends AudioInputStream implements PropertiesContainer {
 
     private final Logger logger = LoggerFactory.getLogger(EqAudioInputStream.class);
-    //protected static final int BLOCKSIZE = 128;
-
-    //protected static final int BLOCKSIZE = 10*1024;
-    protected static final int BLOCKSIZE = 17640;
+    /**
+     * Number of frames converted to float and filtered at once.
+     */
+    protected static final int BLOCK_FRAMES = 1024;
     /**
      * The maximum upper frequency. The highest band would have an even higher
      * upper edge frequency, but it gets reduced to this value.
      */
     private static final int MAX_UPPER_FREQ = 19000;
+    /**
+     * The highest upper edge frequency relative to the sampling rate, so that
+     * the band edges stay below the Nyquist frequency.
+     */
+    private static final double MAX_UPPER_NORM_FREQ = 0.45;
     /**
      * Number of frequency bands.
      */
-    private static final int BAND_COUNT = 10;
+    public static final int BAND_COUNT = 10;
     /**
      * Number of filter stages for each band. Each stage resembles one
      * second-order stage of the low-shelving prototype, which becomes a
@@ -57,276 +68,361 @@ public class EqAudioInputStream extends TAsynchronousFilteredAudioInputStream {
      */
     private static final int STAGE_COUNT = 2;
     /**
-     * The sampling rate used to denormalize frequencies from radian/s to Hz. If
-     * the audio data uses another sampling-rate, the labels in the UI will be
-     * wrong.
+     * The sampling rate used when the audio format does not specify one.
      */
-    private static final int SAMPLING_RATE = 44100;
+    private static final float DEFAULT_SAMPLING_RATE = 44100;
     /**
      * Center frequency of the lowest band.
      */
     private static final double FIRST_CENTER_FREQUENCY = 30;
     /**
-     * Logarithm of the highest normalized frequency to plot.
-     */
-    private static final float UPPER_NORM_FREQ_LOG = 0.4971f;
-    /**
-     * Logarithm of the lowest normalized frequency to plot.
+     * The maximum gain in dB, both boost and cut.
      */
-    private static final float LOWER_NORM_FREQ_LOG = -2.5452f;
+    public static final int MAX_GAIN = 12;
     /**
      * Value of {@link #K} for unity gain.
      */
-    private double[] KBase = new double[BAND_COUNT];
+    private final double[] KBase = new double[BAND_COUNT];
     /**
      * Band-width and gain dependent filter coefficient.
      */
-    private double[] K = new double[BAND_COUNT];
+    private final double[] K = new double[BAND_COUNT];
     /**
      * Gain dependent filter coefficient.
      */
-    private double[] V = new double[BAND_COUNT];
+    private final double[] V = new double[BAND_COUNT];
     /**
      * Auxiliary filter coefficient.
      */
-    private double[][] a0recip = new double[BAND_COUNT][STAGE_COUNT];
+    private final double[][] a0recip = new double[BAND_COUNT][STAGE_COUNT];
     /**
      * Stage dependent filter coefficient.
      */
-    private double[] c = new double[STAGE_COUNT];
+    private final double[] c = new double[STAGE_COUNT];
     /**
      * Center frequency dependent coefficient.
      */
-    private double[] c0 = new double[BAND_COUNT];
+    private final double[] c0 = new double[BAND_COUNT];
     /**
-     * The filter states. In each stage, states 1 and 3 hold the state of delay
-     * inside the all-passes and states 0 and 2 resemble the additional delay at
-     * the all-pass input.
+     * Bands whose edges fit below the Nyquist frequency.
      */
-    private double[][][] filterstates = new double[BAND_COUNT][STAGE_COUNT][4];
-    private AudioInputStream sourceStream;
+    private final boolean[] bandSupported = new boolean[BAND_COUNT];
     /**
-     * Audio input buffer.
+     * Bands with a gain other than 0 dB, the others are skipped.
      */
-    private ByteBuffer audioDataIn;
+    private final boolean[] bandActive = new boolean[BAND_COUNT];
     /**
-     * Audio output buffer.
+     * The filter states per channel. In each stage, states 1 and 3 hold the
+     * state of delay inside the all-passes and states 0 and 2 resemble the
+     * additional delay at the all-pass input.
      */
-    private ByteBuffer audioDataOut;
+    private final double[][][][] filterstates;
     /**
-     * The {@link #audioDataIn} buffer accessed as <code>short</code>s.
+     * De-interleaved samples of the block being filtered, one row per channel.
      */
-    private ShortBuffer shortDataIn;
+    private final float[][] samples;
     /**
-     * The {@link #audioDataOut} buffer accessed as <code>short</code>s.
+     * Gains in dB requested by {@link #setGain(int, int)}, applied by the
+     * reading thread before the next block.
      */
-    private ShortBuffer shortDataOut;
+    private final int[] gains = new int[BAND_COUNT];
+    private volatile boolean gainsChanged = false;
+    private final AudioInputStream sourceStream;
+    private final int nChannels;
+    private final int sampleSizeInBytes;
+    private final boolean bigEndian;
+    private final boolean supported;
+    private final float samplingRate;
     /**
-     * Number of input channels.
+     * True when no band is active, so the data is passed through.
      */
-    private int nChannels;
-//    private double skipped = 0;
-//    private double totalTime = 0;
+    private boolean flat = true;
 
-    /**
-     * The sliders to control the per-band gains.
-     */
-    //private JSlider[] gainSliders = new JSlider[BAND_COUNT];
-    /**
-     * The plot of the resulting magnitude transfer function.
-     */
-    //private PlotDisplay transferPlot = new PlotDisplay();
     public EqAudioInputStream(AudioInputStream sourceStream) {
-        super(sourceStream.getFormat(), sourceStream.getFrameLength());
+        super(sourceStream, sourceStream.getFormat(), sourceStream.getFrameLength());
         this.sourceStream = sourceStream;
+        AudioFormat audioFormat = sourceStream.getFormat();
+        nChannels = Math.max(audioFormat.getChannels(), 1);
+        sampleSizeInBytes = audioFormat.getSampleSizeInBits() / 8;
+        bigEndian = audioFormat.isBigEndian();
+        supported = audioFormat.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+                && (sampleSizeInBytes == 1 || sampleSizeInBytes == 2)
+                && audioFormat.getFrameSize() == nChannels * sampleSizeInBytes;
+        if (audioFormat.getSampleRate() > 0) {
+            samplingRate = audioFormat.getSampleRate();
+        } else {
+            samplingRate = DEFAULT_SAMPLING_RATE;
+        }
+        if (!supported) {
+            logger.info("Equalizer bypassed for format: {}", audioFormat);
+        }
+        filterstates = new double[nChannels][BAND_COUNT][STAGE_COUNT][4];
+        samples = new float[nChannels][BLOCK_FRAMES];
 
         init();
     }
 
-    @Override
-    public void close() throws IOException {
-        super.close();
-        sourceStream.close();
-    }
-
-//    public static double bytesToSeconds(int bytes, AudioFormat format) {
-//        int frame = format.getSampleSizeInBits() / 8;
-//        return (double) bytes / ((double) format.getSampleRate() * (double) format.getChannels() * (double) frame);
-//    }
-
-    @Override
-    public long skip(long n) throws IOException {
-        //long sk = super.skip(n);
-        // need to skip this out of the source
-        long sk = sourceStream.skip(n);
-
-//        skipped += bytesToSeconds((int) sk, sourceStream.getFormat());
+    /**
+     * Initializes the filter coefficients for the sampling rate of the stream.
+     */
+    private void init() {
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            c[stage] = Math.cos((.5 - (2. * stage + 1) / (4 * STAGE_COUNT)) * Math.PI);
+        }
 
-        return sk;
+        double maxUpperFreq = Math.min(MAX_UPPER_FREQ, MAX_UPPER_NORM_FREQ * samplingRate);
+        for (int band = 0; band < BAND_COUNT; band++) {
+            double fC = FIRST_CENTER_FREQUENCY * Math.pow(2, band);
+            double fL = fC / Math.sqrt(2);
+            double fU = fC * Math.sqrt(2);
+            if (fU > maxUpperFreq) {
+                fU = maxUpperFreq;
+            }
+            bandSupported[band] = fL < fU;
+            if (!bandSupported[band]) {
+                continue;
+            }
+            double fB = fU - fL;
+            double wB = 2 * Math.PI / samplingRate * fB;
+            double wU = 2 * Math.PI / samplingRate * fU;
+            double wL = 2 * Math.PI / samplingRate * fL;
+            double wM = 2 * Math.atan(Math.sqrt(Math.tan(wU / 2) * Math.tan(wL / 2)));
+            KBase[band] = Math.tan(wB / 2);
+            c0[band] = Math.cos(wM);
+            setGain(band, 1.0);
+        }
     }
 
-    @Override
-    public void execute() {
-
-        //ALEX!!!
-        double[] inSamples = new double[nChannels * BLOCKSIZE / 2];
-        double[] outSamples = new double[nChannels * BLOCKSIZE / 2];
-
-        int sampleCount;
-        int nBytesRead = 0;
-        try {
-            nBytesRead = sourceStream.read(audioDataIn.array(), 0,
-                    BLOCKSIZE * nChannels);
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Sets the gain for the given band. It may be called from any thread,
+     * the coefficients are updated before the next block is filtered.
+     *
+     * @param band The band to set the gain for.
+     * @param gain The gain in dB, between -{@link #MAX_GAIN} and
+     * {@link #MAX_GAIN}.
+     */
+    public void setGain(int band, int gain) {
+        if (gain > MAX_GAIN) {
+            gain = MAX_GAIN;
+        } else if (gain < -MAX_GAIN) {
+            gain = -MAX_GAIN;
         }
-
-        if (nBytesRead == -1) {
-            getCircularBuffer().close();
-            return;
+        synchronized (gains) {
+            gains[band] = gain;
         }
+        gainsChanged = true;
+    }
 
-        byte[] trimBuffer = audioDataIn.array();
-        if (nBytesRead < trimBuffer.length) {
-            trimBuffer = new byte[nBytesRead];
-            System.arraycopy(audioDataIn.array(), 0, trimBuffer, 0, nBytesRead);
+    /**
+     * Sets the gains of all the bands.
+     *
+     * @param bandGains The gains in dB, or null to reset all of them to 0 dB.
+     */
+    public void setGains(int[] bandGains) {
+        for (int band = 0; band < BAND_COUNT; band++) {
+            setGain(band, (bandGains != null && band < bandGains.length) ? bandGains[band] : 0);
         }
+    }
 
-//        totalTime += bytesToSeconds(nBytesRead, sourceStream.getFormat());
-
-        if (nChannels > 1) {
-            /*
-            sampleCount = nBytesRead / 4;
-            for (int n = 0; n < nBytesRead / 2 - 1; n += 2) {
-            inSamples[n / 2] = ((double) shortDataIn.get(n) + (double) shortDataIn.get(n + 1)) / 2 / 32768;
-            }*/
-
-            sampleCount = nBytesRead / 2;
-            for (int n = 0; n < nBytesRead / 2; n++) {
-                inSamples[n] = (double) shortDataIn.get(n) / 32768;
-            }
+    /**
+     * Sets the gain for the given band.
+     *
+     * @param band The band to set the gain for.
+     * @param gain The multiplicative (i.e. not dB) gain.
+     */
+    protected void setGain(int band, double gain) {
+        K[band] = Math.pow(gain, -1. / (4 * STAGE_COUNT)) * KBase[band];
+        V[band] = Math.sqrt(gain) - 1;
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            a0recip[band][stage] = 1 / (1 + 2 * K[band] * c[stage] + K[band] * K[band]);
+        }
+    }
 
-        } else {
-            sampleCount = nBytesRead / 2;
-            for (int n = 0; n < nBytesRead / 2; n++) {
-                inSamples[n] = (double) shortDataIn.get(n) / 32768;
+    /**
+     * Applies the gains set since the last block. Reading thread only.
+     */
+    private void updateGains() {
+        gainsChanged = false;
+        boolean allFlat = true;
+        synchronized (gains) {
+            for (int band = 0; band < BAND_COUNT; band++) {
+                boolean active = bandSupported[band] && gains[band] != 0;
+                if (active && !bandActive[band]) {
+                    // The state of an idle band is stale.
+                    for (int ch = 0; ch < nChannels; ch++) {
+                        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                            Arrays.fill(filterstates[ch][band][stage], 0);
+                        }
+                    }
+                }
+                if (bandSupported[band]) {
+                    setGain(band, Math.pow(10, gains[band] / 20.));
+                }
+                bandActive[band] = active;
+                allFlat &= !active;
             }
         }
+        flat = allFlat || !supported;
+    }
 
-        for (int n = 0; n < sampleCount; n++) {
-            double outValue;
-
-            outSamples[n] = processSample(inSamples[n]);
-
-            outValue = outSamples[n] * 32768;
-            if (outValue > 32767) {
-                outValue = 32767;
-            }
-            if (outValue < -32768) {
-                outValue = -32768;
-            }
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xFF);
+    }
 
-            shortDataOut.put(n, (short) outValue);
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int nBytesRead = super.read(b, off, len);
+        if (gainsChanged) {
+            updateGains();
         }
-
-        // write the processed block if samples are there
-        if (nBytesRead >= 0) {
-            getCircularBuffer().write(audioDataOut.array(), 0, sampleCount * 2);
+        if (nBytesRead > 0 && !flat) {
+            process(b, off, nBytesRead);
         }
+        return nBytesRead;
+    }
 
+    @Override
+    public long skip(long n) throws IOException {
+        // The decoders seek on skip, so it goes straight to the source.
+        long skipped = sourceStream.skip(n);
+        if (skipped > 0) {
+            resetFilterStates();
+        }
+        return skipped;
     }
 
     /**
-     * The actual filtering algorithm.
-     *
-     * @param u The input sample.
-     * @return The resulting output sample.
+     * Clears the filter states, e.g. after a discontinuity.
      */
-    protected double processSample(double u) {
-        double y = u;
-        for (int band = 0; band < BAND_COUNT; band++) {
-            for (int stage = 0; stage < STAGE_COUNT; stage++) {
-                double x4 = -c0[band] * (filterstates[band][stage][0] - filterstates[band][stage][1]);
-                double x6 = filterstates[band][stage][1] + x4;
-                filterstates[band][stage][1] = filterstates[band][stage][0] + x4;
-                double x8 = -c0[band] * (filterstates[band][stage][2] - filterstates[band][stage][3]);
-                double x7 = filterstates[band][stage][3] + x8;
-                filterstates[band][stage][3] = filterstates[band][stage][2] + x8;
-                double x3 = 2 * x6;
-                double x2 = x7 + x3;
-                double x1 = a0recip[band][stage] * (K[band] * u - (x7 - x3 + K[band] * (-2 * c[stage] * x7 + K[band] * x2)));
-                double x5 = K[band] * (x1 + x2);
-                filterstates[band][stage][0] = -x1;
-                filterstates[band][stage][2] = -x6;
-                y = V[band] * (V[band] * x5 + 2 * (x5 - c[stage] * (x7 - x1))) + u;
-                u = y;
+    public void resetFilterStates() {
+        for (int ch = 0; ch < nChannels; ch++) {
+            for (int band = 0; band < BAND_COUNT; band++) {
+                for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                    Arrays.fill(filterstates[ch][band][stage], 0);
+                }
             }
         }
-        return y;
+    }
+
+    @Override
+    public Map properties() {
+        if (sourceStream instanceof PropertiesContainer) {
+            return ((PropertiesContainer) sourceStream).properties();
+        }
+        return Collections.EMPTY_MAP;
     }
 
     /**
-     * Initializes the filter coefficients and UI components.
+     * Filters whole frames in place, a block at a time.
      */
-    public void init() {
-
-        nChannels = getFormat().getChannels();
-        audioDataIn = ByteBuffer.allocate(BLOCKSIZE * nChannels);
-        audioDataIn.order(ByteOrder.LITTLE_ENDIAN);
-        shortDataIn = audioDataIn.asShortBuffer();
-
-        //audioDataOut = ByteBuffer.allocate(BLOCKSIZE);
-
-        // ALEX!!!
-        audioDataOut = ByteBuffer.allocate(BLOCKSIZE * nChannels);
-
-
-        audioDataOut.order(ByteOrder.LITTLE_ENDIAN);
-        shortDataOut = audioDataOut.asShortBuffer();
-
-        for (int stage = 0; stage < STAGE_COUNT; stage++) {
-            c[stage] = Math.cos((.5 - (2. * stage + 1) / (4 * STAGE_COUNT)) * Math.PI);
+    private void process(byte[] b, int off, int len) {
+        int frameSize = nChannels * sampleSizeInBytes;
+        int end = off + len - (len % frameSize);
+        while (off < end) {
+            int frames = Math.min((end - off) / frameSize, BLOCK_FRAMES);
+            toFloat(b, off, frames);
+            for (int ch = 0; ch < nChannels; ch++) {
+                processBlock(samples[ch], frames, filterstates[ch]);
+            }
+            fromFloat(b, off, frames);
+            off += frames * frameSize;
         }
+    }
 
-        for (int band = 0; band < BAND_COUNT; band++) {
-            double fC = FIRST_CENTER_FREQUENCY * Math.pow(2, band);
-            double fL = fC / Math.sqrt(2);
-            double fU = fC * Math.sqrt(2);
-            if (fU > MAX_UPPER_FREQ) {
-                fU = MAX_UPPER_FREQ;
+    private void toFloat(byte[] b, int off, int frames) {
+        if (sampleSizeInBytes == 1) {
+            for (int i = 0; i < frames; i++) {
+                for (int ch = 0; ch < nChannels; ch++) {
+                    samples[ch][i] = b[off++] * (1f / 128);
+                }
+            }
+        } else {
+            int hi = bigEndian ? 0 : 1;
+            int lo = 1 - hi;
+            for (int i = 0; i < frames; i++) {
+                for (int ch = 0; ch < nChannels; ch++) {
+                    samples[ch][i] = ((b[off + hi] << 8) | (b[off + lo] & 0xFF)) * (1f / 32768);
+                    off += 2;
+                }
             }
-            double fB = fU - fL;
-            double wB = 2 * Math.PI / SAMPLING_RATE * fB;
-            double wU = 2 * Math.PI / SAMPLING_RATE * fU;
-            double wL = 2 * Math.PI / SAMPLING_RATE * fL;
-            double wM = 2 * Math.atan(Math.sqrt(Math.tan(wU / 2) * Math.tan(wL / 2)));
-            KBase[band] = Math.tan(wB / 2);
-            c0[band] = Math.cos(wM);
-            setGain(band, 1.0);
         }
+    }
 
+    private void fromFloat(byte[] b, int off, int frames) {
+        if (sampleSizeInBytes == 1) {
+            for (int i = 0; i < frames; i++) {
+                for (int ch = 0; ch < nChannels; ch++) {
+                    b[off++] = (byte) clip(Math.round(samples[ch][i] * 128), 127);
+                }
+            }
+        } else {
+            int hi = bigEndian ? 0 : 1;
+            int lo = 1 - hi;
+            for (int i = 0; i < frames; i++) {
+                for (int ch = 0; ch < nChannels; ch++) {
+                    int value = clip(Math.round(samples[ch][i] * 32768), 32767);
+                    b[off + hi] = (byte) (value >> 8);
+                    b[off + lo] = (byte) value;
+                    off += 2;
+                }
+            }
+        }
     }
 
-    public void setGain(int band, int gain) {
-        if (gain > 12) {
-            gain = 12;
-        } else if (gain < -12) {
-            gain = -12;
+    private static int clip(int value, int max) {
+        if (value > max) {
+            return max;
+        } else if (value < -max - 1) {
+            return -max - 1;
         }
-        setGain(band, Math.pow(10, gain / 20.));
+        return value;
     }
 
     /**
-     * Sets the gain for the given band.
+     * The actual filtering algorithm, run stage by stage over a block of one
+     * channel. The state is kept in double precision, since the low bands
+     * have poles very close to the unit circle.
      *
-     * @param band The band to set the gain for.
-     * @param gain The multiplicative (i.e. not dB) gain.
+     * @param x The samples, replaced by the filtered samples.
+     * @param frames The number of samples.
+     * @param states The filter states of the channel.
      */
-    protected void setGain(int band, double gain) {
-        K[band] = Math.pow(gain, -1. / (4 * STAGE_COUNT)) * KBase[band];
-        V[band] = Math.sqrt(gain) - 1;
-        for (int stage = 0; stage < STAGE_COUNT; stage++) {
-            a0recip[band][stage] = 1 / (1 + 2 * K[band] * c[stage] + K[band] * K[band]);
+    protected void processBlock(float[] x, int frames, double[][][] states) {
+        for (int band = 0; band < BAND_COUNT; band++) {
+            if (!bandActive[band]) {
+                continue;
+            }
+            double kb = K[band];
+            double vb = V[band];
+            double c0b = c0[band];
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                double[] s = states[band][stage];
+                double s0 = s[0], s1 = s[1], s2 = s[2], s3 = s[3];
+                double a = a0recip[band][stage];
+                double cs = c[stage];
+                for (int n = 0; n < frames; n++) {
+                    double u = x[n];
+                    double x4 = -c0b * (s0 - s1);
+                    double x6 = s1 + x4;
+                    s1 = s0 + x4;
+                    double x8 = -c0b * (s2 - s3);
+                    double x7 = s3 + x8;
+                    s3 = s2 + x8;
+                    double x3 = 2 * x6;
+                    double x2 = x7 + x3;
+                    double x1 = a * (kb * u - (x7 - x3 + kb * (-2 * cs * x7 + kb * x2)));
+                    double x5 = kb * (x1 + x2);
+                    s0 = -x1;
+                    s2 = -x6;
+                    x[n] = (float) (vb * (vb * x5 + 2 * (x5 - cs * (x7 - x1))) + u);
+                }
+                s[0] = s0;
+                s[1] = s1;
+                s[2] = s2;
+                s[3] = s3;
+            }
         }
     }
 }
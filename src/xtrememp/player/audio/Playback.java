@@ -29,5 +29,6 @@ public enum Playback {
     PAUSED,
     STOPPED,
     SEEKING,
+    NEXT_MEDIA,
     EOM
 }
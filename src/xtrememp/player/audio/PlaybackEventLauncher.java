@@ -18,51 +18,72 @@
  */
 package xtrememp.player.audio;
 
-import java.util.Map;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Delivers a playback event to the listeners. Launchers are run one at a
+ * time by the player's event executor, so listeners receive events in the
+ * order they were notified.
  *
  * @author Besmir Beqiri
  */
-public class PlaybackEventLauncher extends Thread {
+public class PlaybackEventLauncher implements Runnable {
 
-    private AudioPlayer source;
-    private Playback state;
-    private long position;
-    private Map properties;
-    private PlaybackListener listener;
+    private static final Logger logger = LoggerFactory.getLogger(PlaybackEventLauncher.class);
+    private final PlaybackEvent event;
+    private final List<PlaybackListener> listeners;
+    private final boolean progress;
 
-    public PlaybackEventLauncher(AudioPlayer source, Playback state, long position, Map properties, PlaybackListener listener) {
-        super();
-        this.source = source;
-        this.state = state;
-        this.position = position;
-        this.properties = properties;
-        this.listener = listener;
+    public PlaybackEventLauncher(PlaybackEvent event, List<PlaybackListener> listeners) {
+        this(event, listeners, false);
+    }
+
+    /**
+     * @param event the event, shared by all listeners
+     * @param listeners the listeners
+     * @param progress if true the event is delivered as a progress event
+     */
+    public PlaybackEventLauncher(PlaybackEvent event, List<PlaybackListener> listeners, boolean progress) {
+        this.event = event;
+        this.listeners = listeners;
+        this.progress = progress;
     }
 
     @Override
     public void run() {
-        if (listener != null) {
-            switch (state) {
-                case BUFFERING:
-                    listener.playbackBuffering(new PlaybackEvent(source, state, position, properties));
-                    break;
-                case OPENED:
-                    listener.playbackOpened(new PlaybackEvent(source, state, position, properties));
-                    break;
-                case EOM:
-                    listener.playbackEndOfMedia(new PlaybackEvent(source, state, position, properties));
-                    break;
-                case PLAYING:
-                    listener.playbackPlaying(new PlaybackEvent(source, state, position, properties));
-                    break;
-                case PAUSED:
-                    listener.playbackPaused(new PlaybackEvent(source, state, position, properties));
-                    break;
-                case STOPPED:
-                    listener.playbackStopped(new PlaybackEvent(source, state, position, properties));
-                    break;
+        for (PlaybackListener listener : listeners) {
+            try {
+                if (progress) {
+                    listener.playbackProgress(event);
+                    continue;
+                }
+                switch (event.getState()) {
+                    case BUFFERING:
+                        listener.playbackBuffering(event);
+                        break;
+                    case OPENED:
+                        listener.playbackOpened(event);
+                        break;
+                    case EOM:
+                        listener.playbackEndOfMedia(event);
+                        break;
+                    case NEXT_MEDIA:
+                        listener.playbackNextMedia(event);
+                        break;
+                    case PLAYING:
+                        listener.playbackPlaying(event);
+                        break;
+                    case PAUSED:
+                        listener.playbackPaused(event);
+                        break;
+                    case STOPPED:
+                        listener.playbackStopped(event);
+                        break;
+                }
+            } catch (RuntimeException ex) {
+                logger.error("Playback listener failed", ex);
             }
         }
     }
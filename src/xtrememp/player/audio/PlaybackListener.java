@@ -27,6 +27,7 @@ public interface PlaybackListener {
     public void playbackBuffering(PlaybackEvent pe);
     public void playbackOpened(PlaybackEvent pe);
     public void playbackEndOfMedia(PlaybackEvent pe);
+    public void playbackNextMedia(PlaybackEvent pe);
     public void playbackPlaying(PlaybackEvent pe);
     public void playbackProgress(PlaybackEvent pe);
     public void playbackPaused(PlaybackEvent pe);
@@ -27,8 +27,7 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.sound.sampled.LineEvent;
 import javax.sound.sampled.LineListener;
 import javax.sound.sampled.SourceDataLine;
@@ -37,7 +36,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class provides synchronization between a digital signal processor and
- * speaker output.
+ * speaker output. Audio data is handed over through a lock-free ring buffer,
+ * so that the audio thread never waits on the processors.
  * 
  * Based on KJ-DSS project by Kristofer Fudalewski (http://sirk.sytes.net).
  *
@@ -50,16 +50,19 @@ public class DigitalSignalSynchronizer implements LineListener, Runnable {
     public static final int DEFAULT_SAMPLE_SIZE = 2048;
     private final List<DigitalSignalProcessor> dspList;
     private final ScheduledExecutorService execService;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    private final Lock rLock = lock.readLock();
-    private final Lock wLock = lock.writeLock();
-    private final Condition writeCondition = wLock.newCondition();
+    private final Lock lock = new ReentrantLock();
+    private final Condition dspCondition = lock.newCondition();
     private ScheduledFuture schedFuture;
     private int sampleSize = DEFAULT_SAMPLE_SIZE;
     private int framesPerSecond = DEFAULT_FPS;
     private SourceDataLine sourceDataLine;
-    private ByteBuffer audioDataBuffer;
+    private volatile SnapshotRingBuffer audioDataBuffer;
+    private ByteBuffer sampleBuffer;
     private DssContext dssContext;
+    private final FrameStatistics frameStatistics = new FrameStatistics();
+    private long framePeriod;
+    private long nextFrameTime;
+    private long resyncTime;
 
     /**
      * Default constructor.
@@ -94,11 +97,11 @@ public class DigitalSignalSynchronizer implements LineListener, Runnable {
         if (dspList.add(dsp)) {
             logger.info("DSP added");
         }
-        wLock.lock();
+        lock.lock();
         try {
-            writeCondition.signal();
+            dspCondition.signal();
         } finally {
-            wLock.unlock();
+            lock.unlock();
         }
     }
 
@@ -129,7 +132,11 @@ public class DigitalSignalSynchronizer implements LineListener, Runnable {
 
         sourceDataLine = sdl;
         dssContext = new DssContext(sourceDataLine, sampleSize);
-        audioDataBuffer = ByteBuffer.allocate(sdl.getBufferSize());
+        int frameSize = sdl.getFormat().getFrameSize();
+        sampleBuffer = ByteBuffer.allocate(sampleSize * frameSize);
+        // Room for the data buffered by the line ahead of the played frame,
+        // and a few windows more so that readers are rarely overwritten.
+        audioDataBuffer = new SnapshotRingBuffer(sdl.getBufferSize() + 4 * sampleBuffer.capacity());
 
         //Initialize DSP registered with this DSS.
         for (DigitalSignalProcessor dsp : dspList) {
@@ -138,8 +145,10 @@ public class DigitalSignalSynchronizer implements LineListener, Runnable {
     }
 
     protected void start() {
-        long delay = Math.round(1000 / framesPerSecond);
-        schedFuture = execService.scheduleWithFixedDelay(this, 0, delay, TimeUnit.MILLISECONDS);
+        framePeriod = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        nextFrameTime = System.nanoTime();
+        resyncTime = nextFrameTime;
+        schedFuture = execService.scheduleAtFixedRate(this, 0, framePeriod, TimeUnit.NANOSECONDS);
     }
 
     protected boolean isRunning() {
@@ -162,9 +171,7 @@ public class DigitalSignalSynchronizer implements LineListener, Runnable {
         if (schedFuture != null) {
             schedFuture.cancel(true);
         }
-        if (audioDataBuffer != null) {
-            audioDataBuffer.clear();
-        }
+        audioDataBuffer = null;
     }
 
     /**
@@ -175,48 +182,88 @@ public class DigitalSignalSynchronizer implements LineListener, Runnable {
      * @param length The length from the specified offset to read.
      */
     public void writeAudioData(byte[] audioData, int offset, int length) {
-        if (audioDataBuffer == null) {
-            return;
+        SnapshotRingBuffer ringBuffer = audioDataBuffer;
+        if (ringBuffer != null) {
+            ringBuffer.write(audioData, offset, length);
         }
+    }
 
-        wLock.lock();
-        try {
-            if (audioDataBuffer.remaining() < length) {
-                audioDataBuffer.clear();
-            }
-            audioDataBuffer.put(audioData, offset, length);
-        } finally {
-            wLock.unlock();
-        }
+    /**
+     * Returns the statistics of the frames dispatched to the DSPs.
+     *
+     * @return A {@link FrameStatistics} object.
+     */
+    public FrameStatistics getFrameStatistics() {
+        return frameStatistics;
     }
 
     @Override
     public void run() {
+        long startTime = System.nanoTime();
+        long frameTime = nextFrameTime;
+        nextFrameTime += framePeriod;
+        if (startTime - frameTime >= framePeriod) {
+            // The executor is catching up on a late frame, drop it. Frames
+            // missed while idle are not accounted for.
+            if (frameTime - resyncTime >= 0) {
+                frameStatistics.frameDropped();
+            }
+            return;
+        }
         if (!dspList.isEmpty()) {
-            rLock.lock();
-            try {
-                dssContext.normalizeData(audioDataBuffer);
-            } finally {
-                rLock.unlock();
+            if (readSamples()) {
+                dssContext.normalizeData(sampleBuffer);
             }
             //Dispatch sample data to digtal signal processors.
             for (DigitalSignalProcessor dsp : dspList) {
                 dsp.process(dssContext);
             }
+            frameStatistics.frameCompleted(startTime, System.nanoTime());
         } else {
-            wLock.lock();
+            lock.lock();
             try {
-                writeCondition.awaitUninterruptibly();
+                dspCondition.awaitUninterruptibly();
             } finally {
-                wLock.unlock();
+                lock.unlock();
             }
+            resyncTime = System.nanoTime();
         }
     }
 
+    /**
+     * Copies the window of audio data starting at the frame being played into
+     * the sample buffer, retrying if the writer overwrote it meanwhile.
+     *
+     * @return <code>true</code> if a consistent window was copied.
+     */
+    private boolean readSamples() {
+        SnapshotRingBuffer ringBuffer = audioDataBuffer;
+        if (ringBuffer == null) {
+            return false;
+        }
+        int length = sampleBuffer.capacity();
+        int frameSize = length / sampleSize;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            long end = ringBuffer.getWritePosition();
+            long position = sourceDataLine.getLongFramePosition() * frameSize;
+            if (position + length > end || position < end - ringBuffer.getCapacity()) {
+                // Out of the written data, e.g. after a flush: use the latest.
+                position = end - length - (end % frameSize);
+            }
+            if (position < 0) {
+                return false;
+            }
+            if (ringBuffer.read(position, sampleBuffer.array(), 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void update(LineEvent event) {
         LineEvent.Type type = event.getType();
-        wLock.lock();
+        lock.lock();
         try {
             if (type.equals(LineEvent.Type.OPEN)) {
                 open((SourceDataLine) event.getLine());
@@ -228,7 +275,7 @@ public class DigitalSignalSynchronizer implements LineListener, Runnable {
                 close();
             }
         } finally {
-            wLock.unlock();
+            lock.unlock();
         }
     }
 }
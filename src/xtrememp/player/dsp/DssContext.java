@@ -31,6 +31,7 @@ public class DssContext {
 
     private SourceDataLine sourceDataLine;
     private AudioFormat audioFormat;
+    private float[][] channelsData;
     private FloatBuffer[] channelsBuffer;
     private int offset;
     private int sampleSize;
@@ -39,6 +40,8 @@ public class DssContext {
     private int ssib;
     private int channelSize;
     private float audioSampleSize;
+    private boolean signed;
+    private boolean bigEndian;
 
     /**
      * Create a DSS context from a source data line with a fixed sample size.
@@ -56,22 +59,91 @@ public class DssContext {
         ssib = audioFormat.getSampleSizeInBits();
         channelSize = frameSize / channels;
         audioSampleSize = (1 << (ssib - 1));
+        // 8 bits data is unsigned unless stated otherwise, as it has always
+        // been read here.
+        signed = (ssib > 8 || audioFormat.getEncoding() == AudioFormat.Encoding.PCM_SIGNED);
+        bigEndian = audioFormat.isBigEndian();
 
+        this.channelsData = new float[channels][sampleSize];
         this.channelsBuffer = new FloatBuffer[channels];
         for (int ch = 0; ch < channels; ch++) {
-            channelsBuffer[ch] = FloatBuffer.allocate(sampleSize);
+            channelsBuffer[ch] = FloatBuffer.wrap(channelsData[ch]);
         }
     }
 
+    /**
+     * Normalizes the audio data of a sample window. The common 8, 16 and 24
+     * bits formats are decoded from the backing array in a single pass over
+     * all channels.
+     *
+     * @param audioDataBuffer A buffer holding the sample size frames to
+     *                        normalize, from its first byte.
+     */
     public void normalizeData(ByteBuffer audioDataBuffer) {
-        long lfp = sourceDataLine.getLongFramePosition();
-        offset = (int) ((long) (lfp * frameSize) % (long) (audioDataBuffer.capacity()));
+        offset = 0;
+        if (!audioDataBuffer.hasArray() || channelSize * 8 != ssib) {
+            normalizeGeneric(audioDataBuffer);
+            return;
+        }
+        byte[] data = audioDataBuffer.array();
+        int base = audioDataBuffer.arrayOffset() + offset;
+        switch (channelSize) {
+            case 1:
+                normalize8(data, base);
+                break;
+            case 2:
+                normalize16(data, base);
+                break;
+            case 3:
+                normalize24(data, base);
+                break;
+            default:
+                normalizeGeneric(audioDataBuffer);
+        }
+    }
 
+    private void normalize8(byte[] data, int base) {
+        float scale = 1.0F / 128.0F;
+        int bias = signed ? 0 : 128;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = channelsData[ch];
+            for (int sp = 0, pos = base + ch; sp < sampleSize; sp++, pos += frameSize) {
+                out[sp] = (signed ? data[pos] : (data[pos] & 0xFF) - bias) * scale;
+            }
+        }
+    }
+
+    private void normalize16(byte[] data, int base) {
+        float scale = 1.0F / 32768.0F;
+        int lo = bigEndian ? 1 : 0;
+        int hi = 1 - lo;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = channelsData[ch];
+            for (int sp = 0, pos = base + ch * 2; sp < sampleSize; sp++, pos += frameSize) {
+                out[sp] = ((data[pos + hi] << 8) | (data[pos + lo] & 0xFF)) * scale;
+            }
+        }
+    }
+
+    private void normalize24(byte[] data, int base) {
+        float scale = 1.0F / 8388608.0F;
+        int lo = bigEndian ? 2 : 0;
+        int hi = 2 - lo;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = channelsData[ch];
+            for (int sp = 0, pos = base + ch * 3; sp < sampleSize; sp++, pos += frameSize) {
+                out[sp] = ((data[pos + hi] << 16) | ((data[pos + 1] & 0xFF) << 8)
+                        | (data[pos + lo] & 0xFF)) * scale;
+            }
+        }
+    }
+
+    /**
+     * Normalizes any other sample size, byte by byte.
+     */
+    private void normalizeGeneric(ByteBuffer audioDataBuffer) {
         // -- Loop through audio data.
         for (int sp = 0, pos = offset; sp < sampleSize; sp++, pos += frameSize) {
-            if (pos >= audioDataBuffer.capacity()) {
-                pos = 0;
-            }
 
             // -- Loop through channels.
             for (int ch = 0, cdp = 0; ch < channels; ch++, cdp += channelSize) {
@@ -85,7 +157,7 @@ public class DssContext {
                 }
 
                 // -- Store normalized data.
-                channelsBuffer[ch].put(sp, sm / audioSampleSize);
+                channelsData[ch][sp] = sm / audioSampleSize;
             }
         }
     }
@@ -99,6 +171,16 @@ public class DssContext {
         return channelsBuffer;
     }
 
+    /**
+     * Returns the normalized sample of each channel, backing the buffers
+     * returned by {@link #getDataNormalized()}.
+     *
+     * @return An array of channels data, each one of sample size length.
+     */
+    public float[][] getChannelsData() {
+        return channelsData;
+    }
+
     /**
      * Returns the sample size to read from the data buffer.
      *
@@ -109,9 +191,9 @@ public class DssContext {
     }
 
     /**
-     * Returns the data buffer offset to start reading from. Please note that the offset + length
-     * can be beyond the buffer length. This simply means, the rest of data sample has rolled over
-     * to the beginning of the data buffer.
+     * Returns the data buffer offset to start reading from. The sample window
+     * is copied out of the ring buffer of the synchronizer, so it always
+     * starts at the beginning of the data buffer.
      *
      * @return The data buffer offset to start reading from.
      */
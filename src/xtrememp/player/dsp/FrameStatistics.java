@@ -0,0 +1,114 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.player.dsp;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frame rate statistics of a render loop: the measured frames per second,
+ * the count of dropped frames and a histogram of the frame times, with one
+ * millisecond wide buckets.
+ *
+ * @author Besmir Beqiri
+ */
+public class FrameStatistics {
+
+    public static final int HISTOGRAM_SIZE = 64;
+    private static final long FPS_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private final long[] histogram = new long[HISTOGRAM_SIZE];
+    private long frameCount;
+    private long droppedFrameCount;
+    private long intervalStart = -1;
+    private int intervalFrames;
+    private float framesPerSecond;
+
+    /**
+     * Records a frame.
+     *
+     * @param startTime The start time of the frame, in nanoseconds.
+     * @param endTime The end time of the frame, in nanoseconds.
+     */
+    public synchronized void frameCompleted(long startTime, long endTime) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
+        histogram[(int) Math.min(Math.max(millis, 0), HISTOGRAM_SIZE - 1)]++;
+        frameCount++;
+        if (intervalStart < 0) {
+            intervalStart = startTime;
+        }
+        intervalFrames++;
+        long elapsed = endTime - intervalStart;
+        if (elapsed >= FPS_INTERVAL) {
+            framesPerSecond = (float) intervalFrames * FPS_INTERVAL / elapsed;
+            intervalStart = endTime;
+            intervalFrames = 0;
+        }
+    }
+
+    /**
+     * Records a frame dropped, because it was late or could not be rendered.
+     */
+    public synchronized void frameDropped() {
+        droppedFrameCount++;
+    }
+
+    /**
+     * Returns the frames completed per second, measured over the last second.
+     *
+     * @return The measured frame rate.
+     */
+    public synchronized float getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    /**
+     * Returns the frame times histogram. Element i counts the frames which
+     * took i milliseconds, the last one all longer frames too.
+     *
+     * @return A copy of the histogram.
+     */
+    public synchronized long[] getFrameTimeHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Clears all statistics.
+     */
+    public synchronized void reset() {
+        Arrays.fill(histogram, 0);
+        frameCount = 0;
+        droppedFrameCount = 0;
+        intervalStart = -1;
+        intervalFrames = 0;
+        framesPerSecond = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%.1f fps, %d frames, %d dropped", framesPerSecond, frameCount, droppedFrameCount);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.player.dsp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free byte ring buffer keeping the latest audio data written, for
+ * exactly one writer thread and any number of readers. The writer never
+ * waits and overwrites the oldest data. Readers copy a window of data by its
+ * absolute position and detect, seqlock-style, a window overwritten while it
+ * was being copied.
+ * <p>
+ * Memory ordering: {@link #write} publishes its bytes by a release store of
+ * the write position, so a reader seeing a position also sees the bytes
+ * before it. Plain stores following a volatile write may however move before
+ * it, and plain loads preceding a volatile read may move after it, so a
+ * seqlock can't announce and check its limit by volatile writes and reads.
+ * The writer announcing the limit and the reader checking it after its copy
+ * both use a read-modify-write on it, and these are totally ordered: if the
+ * reader's comes first, the writer's reads the value it wrote, so the copy
+ * happens-before the overwrite; else the reader sees the new limit and
+ * rejects the window.
+ *
+ * @author Besmir Beqiri
+ */
+public class SnapshotRingBuffer {
+
+    private final byte[] buffer;
+    private final int mask;
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong writeLimit = new AtomicLong();
+
+    /**
+     * Creates a ring buffer.
+     * @param size the minimum capacity in bytes, rounded up to a power of two
+     */
+    public SnapshotRingBuffer(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        buffer = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Returns the absolute position following the last byte written.
+     */
+    public long getWritePosition() {
+        return writePosition.get();
+    }
+
+    /**
+     * Writes len bytes, overwriting the oldest data. Writer thread only.
+     */
+    public void write(byte[] b, int off, int len) {
+        long w = writePosition.get();
+        long limit = w + len;
+        if (len > buffer.length) {
+            // Only the last bytes fit.
+            off += len - buffer.length;
+            w += len - buffer.length;
+            len = buffer.length;
+        }
+        // Announce the bytes about to be overwritten before touching them,
+        // by a read-modify-write which the stores below can't move before.
+        writeLimit.getAndSet(limit);
+        int index = (int) w & mask;
+        int first = Math.min(len, buffer.length - index);
+        System.arraycopy(b, off, buffer, index, first);
+        System.arraycopy(b, off + first, buffer, 0, len - first);
+        writePosition.lazySet(limit);
+    }
+
+    /**
+     * Copies len bytes starting at the given absolute position.
+     *
+     * @return <code>true</code> if the bytes were all written and none of
+     *         them was overwritten during the copy, else <code>false</code>.
+     */
+    public boolean read(long position, byte[] b, int off, int len) {
+        long w = writePosition.get();
+        if (len > buffer.length || position < 0 || position + len > w
+                || position < w - buffer.length) {
+            return false;
+        }
+        int index = (int) position & mask;
+        int first = Math.min(len, buffer.length - index);
+        System.arraycopy(buffer, index, b, off, first);
+        System.arraycopy(buffer, 0, b, off + first, len - first);
+        // The writer may have overwritten positions up to limit - capacity.
+        // A read-modify-write, which the copy above can't move after.
+        return position >= writeLimit.getAndAdd(0) - buffer.length;
+    }
+}
@@ -22,23 +22,30 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import xtrememp.playlist.PlaylistEvent.Range;
 import xtrememp.playlist.filter.Predicate;
 import xtrememp.playlist.filter.TruePredicate;
+import xtrememp.playlist.sort.PlaylistSorter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Playlist implementation.
+ * Playlist implementation. It is not thread-safe and must be used on the
+ * event dispatch thread only: even reads such as {@link #indexOf} may
+ * rebuild the position index.
  *
  * @author Besmir Beqiri
  */
 public class Playlist {
 
     private static Logger logger = LoggerFactory.getLogger(Playlist.class);
+    private static final int MAX_RANGES = 32;
 
     public enum PlayMode {
 
@@ -50,6 +57,8 @@ public class Playlist {
     protected final List<PlaylistItem> cachedPlaylist;
     protected final List<PlaylistItem> filteredPlaylist;
     protected final List<PlaylistItem> shuffledList;
+    protected final Map<PlaylistItem, Integer> shuffledPositions;
+    protected final Map<PlaylistItem, Integer> filteredPositions;
     protected final List<PlaylistListener> listeners;
     protected final Random rnd;
     protected Predicate<PlaylistItem> filterPredicate;
@@ -57,6 +66,13 @@ public class Playlist {
     protected PlaylistItem cursor;
     protected int shuffledIndex = -1;
     protected boolean isModified = false;
+    protected int modCount = 0;
+    protected boolean filteredPositionsValid = true;
+    protected int updateDepth = 0;
+    protected boolean pendingChange = false;
+    protected Set<PlaylistItem> pendingAddedItems;
+    protected Set<PlaylistItem> pendingRemovedItems;
+    protected List<Range> pendingRanges;
 
     /**
      * Default constructor.
@@ -65,9 +81,12 @@ public class Playlist {
         cachedPlaylist = new ArrayList<PlaylistItem>();
         filteredPlaylist = new ArrayList<PlaylistItem>();
         shuffledList = new ArrayList<PlaylistItem>();
+        shuffledPositions = new IdentityHashMap<PlaylistItem, Integer>();
+        filteredPositions = new IdentityHashMap<PlaylistItem, Integer>();
         listeners = new ArrayList<PlaylistListener>();
         rnd = new Random();
         filterPredicate = TruePredicate.<PlaylistItem>getInstance();
+        resetPendingChange();
     }
 
     /**
@@ -88,30 +107,43 @@ public class Playlist {
     public void setPlayMode(PlayMode playMode) {
         this.playMode = playMode;
         if (playMode == PlayMode.SHUFFLE) {
-            int size = size();
-            switch (size) {
-                case 1:
-                    shuffledList.add(filteredPlaylist.get(0));
-                    break;
-                default:
-                    for (int i = 0; i < size; i++) {
-                        shuffledList.add(rnd.nextInt(shuffledList.size() + 1),
-                                filteredPlaylist.get(i));
-                    }
-                    int cursorShuffledIndex = shuffledList.indexOf(cursor);
-                    if (cursorShuffledIndex != -1) {
-                        Collections.swap(shuffledList, 0, cursorShuffledIndex);
-                    }
-                    break;
-            }
-            shuffledIndex = 0;
+            shuffle();
         } else {
             shuffledList.clear();
+            shuffledPositions.clear();
             shuffledIndex = -1;
         }
         firePlayModeChangedEvent();
     }
 
+    /**
+     * Begins an update of the playlist. Until the matching call to
+     * {@link #commitUpdate()}, the changes made to the playlist are recorded
+     * and then notified to the listeners as a single event. Updates can be
+     * nested, and should be committed within the same event of the event
+     * dispatch thread.
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * Commits an update of the playlist, notifying the listeners of the
+     * changes once the outermost update is committed.
+     */
+    public void commitUpdate() {
+        if (updateDepth == 0) {
+            throw new IllegalStateException("No update in progress");
+        }
+        updateDepth--;
+        if (updateDepth == 0 && pendingChange) {
+            PlaylistEvent event = new PlaylistEvent(this, pendingAddedItems,
+                    pendingRemovedItems, pendingRanges);
+            resetPendingChange();
+            fireChangedEvent(event);
+        }
+    }
+
     /**
      * Appends a playlist item at the end of the playlist.
      *
@@ -119,16 +151,23 @@ public class Playlist {
      * @return <code>true</code> if item was successfully added, else <code>false</code>.
      */
     public boolean addItem(PlaylistItem item) {
-        boolean added = cachedPlaylist.add(item);
-        if (filterPredicate.evaluate(item)) {
-            filteredPlaylist.add(item);
-        }
-        setModified(added);
-        if (playMode == PlayMode.SHUFFLE) {
-            addToShuffledList(item);
+        beginUpdate();
+        try {
+            boolean added = cachedPlaylist.add(item);
+            recordAdded(item);
+            if (filterPredicate.evaluate(item)) {
+                appendFiltered(item);
+                recordRange(Range.Type.INSERTED, filteredPlaylist.size() - 1, filteredPlaylist.size() - 1);
+            }
+            modCount++;
+            setModified(added);
+            if (playMode == PlayMode.SHUFFLE) {
+                addToShuffledList(item);
+            }
+            return added;
+        } finally {
+            commitUpdate();
         }
-        fireItemAddedEvent(item);
-        return added;
     }
 
     /**
@@ -138,15 +177,23 @@ public class Playlist {
      * @param item A playlist item.
      */
     public void addItemAt(int pos, PlaylistItem item) {
-        cachedPlaylist.add(pos, item);
-        if (filterPredicate.evaluate(item)) {
-            filteredPlaylist.add(pos, item);
-        }
-        setModified((item == null) ? false : true);
-        if (playMode == PlayMode.SHUFFLE) {
-            addToShuffledList(item);
+        beginUpdate();
+        try {
+            cachedPlaylist.add(pos, item);
+            recordAdded(item);
+            if (filterPredicate.evaluate(item)) {
+                filteredPlaylist.add(pos, item);
+                filteredPositionsValid = false;
+                recordRange(Range.Type.INSERTED, pos, pos);
+            }
+            modCount++;
+            setModified((item == null) ? false : true);
+            if (playMode == PlayMode.SHUFFLE) {
+                addToShuffledList(item);
+            }
+        } finally {
+            commitUpdate();
         }
-        fireItemAddedEvent(item);
     }
 
     /**
@@ -157,22 +204,28 @@ public class Playlist {
      *         else <code>false</code>.
      */
     public boolean addAll(Collection<? extends PlaylistItem> c) {
-        boolean added = cachedPlaylist.addAll(c);
-        for (PlaylistItem item : c) {
-            if (filterPredicate.evaluate(item)) {
-                filteredPlaylist.add(item);
-            }
-        }
-        setModified(added);
-        if (playMode == PlayMode.SHUFFLE) {
+        beginUpdate();
+        try {
+            boolean added = cachedPlaylist.addAll(c);
+            int first = filteredPlaylist.size();
             for (PlaylistItem item : c) {
-                addToShuffledList(item);
+                recordAdded(item);
+                if (filterPredicate.evaluate(item)) {
+                    appendFiltered(item);
+                }
             }
+            recordRange(Range.Type.INSERTED, first, filteredPlaylist.size() - 1);
+            modCount++;
+            setModified(added);
+            if (playMode == PlayMode.SHUFFLE) {
+                for (PlaylistItem item : c) {
+                    addToShuffledList(item);
+                }
+            }
+            return added;
+        } finally {
+            commitUpdate();
         }
-        for (PlaylistItem item : c) {
-            fireItemAddedEvent(item);
-        }
-        return added;
     }
 
     /**
@@ -182,14 +235,22 @@ public class Playlist {
      * @return <code>true</code> if item was successfully removed, else <code>false</code>.
      */
     public boolean removeItem(PlaylistItem item) {
-        boolean removed = cachedPlaylist.remove(item);
-        filteredPlaylist.remove(item);
-        setModified(removed);
-        if (playMode == PlayMode.SHUFFLE) {
-            removeFromShuffledList(item);
+        beginUpdate();
+        try {
+            boolean removed = cachedPlaylist.remove(item);
+            if (removed) {
+                removeFiltered(item);
+                recordRemoved(item);
+                modCount++;
+                if (playMode == PlayMode.SHUFFLE) {
+                    removeFromShuffledList(item);
+                }
+            }
+            setModified(removed);
+            return removed;
+        } finally {
+            commitUpdate();
         }
-        fireItemRemovedEvent(item);
-        return removed;
     }
 
     /**
@@ -199,51 +260,113 @@ public class Playlist {
      * @return The playlist item that was removed.
      */
     public PlaylistItem removeItemAt(int pos) {
-        PlaylistItem item = cachedPlaylist.remove(pos);
-        filteredPlaylist.remove(item);
-        setModified((item == null) ? false : true);
-        if (playMode == PlayMode.SHUFFLE) {
-            removeFromShuffledList(item);
+        beginUpdate();
+        try {
+            PlaylistItem item = cachedPlaylist.remove(pos);
+            removeFiltered(item);
+            recordRemoved(item);
+            modCount++;
+            setModified((item == null) ? false : true);
+            if (playMode == PlayMode.SHUFFLE) {
+                removeFromShuffledList(item);
+            }
+            return item;
+        } finally {
+            commitUpdate();
         }
-        fireItemRemovedEvent(item);
-        return item;
     }
 
     /**
-     * Removes a collection of items from the playlist.
+     * Removes a collection of items from the playlist, in a single pass over
+     * the playlist.
      *
      * @param c A collection of items.
      * @return <code>true</code> if this playlist changed as a result of the call.
      */
     public boolean removeAll(Collection<? extends PlaylistItem> c) {
-        boolean removed = cachedPlaylist.removeAll(c);
-        filteredPlaylist.removeAll(c);
-        setModified(removed);
-        if (playMode == PlayMode.SHUFFLE) {
-            for (PlaylistItem item : c) {
-                removeFromShuffledList(item);
+        Set<PlaylistItem> items = Collections.newSetFromMap(new IdentityHashMap<PlaylistItem, Boolean>());
+        items.addAll(c);
+        beginUpdate();
+        try {
+            List<PlaylistItem> removedItems = new ArrayList<PlaylistItem>();
+            int size = cachedPlaylist.size();
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                PlaylistItem item = cachedPlaylist.get(i);
+                if (items.contains(item)) {
+                    removedItems.add(item);
+                    recordRemoved(item);
+                } else {
+                    cachedPlaylist.set(j++, item);
+                }
             }
+            cachedPlaylist.subList(j, size).clear();
+            // Runs of deleted positions, recorded backwards so that each one
+            // is still valid once the following ones are deleted.
+            List<Range> deleted = new ArrayList<Range>();
+            size = filteredPlaylist.size();
+            j = 0;
+            int runStart = -1;
+            for (int i = 0; i < size; i++) {
+                PlaylistItem item = filteredPlaylist.get(i);
+                if (items.contains(item)) {
+                    if (runStart < 0) {
+                        runStart = i;
+                    }
+                } else {
+                    if (runStart >= 0) {
+                        deleted.add(new Range(Range.Type.DELETED, runStart, i - 1));
+                        runStart = -1;
+                    }
+                    filteredPlaylist.set(j++, item);
+                }
+            }
+            if (runStart >= 0) {
+                deleted.add(new Range(Range.Type.DELETED, runStart, size - 1));
+            }
+            filteredPlaylist.subList(j, size).clear();
+            filteredPositionsValid = false;
+            for (int i = deleted.size() - 1; i >= 0; i--) {
+                recordRange(deleted.get(i));
+            }
+            boolean removed = !removedItems.isEmpty();
+            if (removed) {
+                modCount++;
+            }
+            setModified(removed);
+            if (playMode == PlayMode.SHUFFLE) {
+                for (PlaylistItem item : removedItems) {
+                    removeFromShuffledList(item);
+                }
+            }
+            return removed;
+        } finally {
+            commitUpdate();
         }
-        for (PlaylistItem item : c) {
-            fireItemRemovedEvent(item);
-        }
-        return removed;
     }
 
     /**
      * Removes all items from the playlist.
      */
     public void clear() {
-        Iterator<PlaylistItem> iterator = cachedPlaylist.iterator();
-        while (iterator.hasNext()) {
-            PlaylistItem item = iterator.next();
-            iterator.remove();
-            fireItemRemovedEvent(item);
+        beginUpdate();
+        try {
+            for (PlaylistItem item : cachedPlaylist) {
+                recordRemoved(item);
+            }
+            recordRange(Range.Type.DELETED, 0, filteredPlaylist.size() - 1);
+            cachedPlaylist.clear();
+            modCount++;
+            filteredPlaylist.clear();
+            filteredPositions.clear();
+            filteredPositionsValid = true;
+            shuffledList.clear();
+            shuffledPositions.clear();
+            shuffledIndex = 0;
+            begin();
+        } finally {
+            commitUpdate();
         }
-        filteredPlaylist.clear();
-        shuffledList.clear();
-        shuffledIndex = 0;
-        begin();
     }
 
     /**
@@ -252,9 +375,59 @@ public class Playlist {
      * @param comparator A {@link Comparator} object.
      */
     public void sort(Comparator<PlaylistItem> comparator) {
-        Collections.sort(cachedPlaylist, comparator);
-        Collections.sort(filteredPlaylist, comparator);
-        setModified(true);
+        beginUpdate();
+        try {
+            Collections.sort(cachedPlaylist, comparator);
+            mergeFiltered();
+            recordAllChanged();
+            modCount++;
+            setModified(true);
+        } finally {
+            commitUpdate();
+        }
+    }
+
+    /**
+     * Sorts the entire playlist with the given sorter.
+     *
+     * @param sorter A {@link PlaylistSorter} object.
+     */
+    public void sort(PlaylistSorter sorter) {
+        beginUpdate();
+        try {
+            int[] order = sorter.sort(cachedPlaylist);
+            PlaylistItem[] items = cachedPlaylist.toArray(new PlaylistItem[cachedPlaylist.size()]);
+            for (int i = 0; i < order.length; i++) {
+                cachedPlaylist.set(i, items[order[i]]);
+            }
+            mergeFiltered();
+            recordAllChanged();
+            modCount++;
+            setModified(true);
+        } finally {
+            commitUpdate();
+        }
+    }
+
+    /**
+     * Reorders the filtered items as in the sorted playlist, instead of
+     * sorting them again.
+     */
+    private void mergeFiltered() {
+        if (!isFiltered()) {
+            filteredPlaylist.clear();
+            filteredPlaylist.addAll(cachedPlaylist);
+        } else {
+            Set<PlaylistItem> items = Collections.newSetFromMap(new IdentityHashMap<PlaylistItem, Boolean>());
+            items.addAll(filteredPlaylist);
+            filteredPlaylist.clear();
+            for (PlaylistItem item : cachedPlaylist) {
+                if (items.contains(item)) {
+                    filteredPlaylist.add(item);
+                }
+            }
+        }
+        filteredPositionsValid = false;
     }
 
     /**
@@ -263,21 +436,51 @@ public class Playlist {
      * @param filterPredicate A {@link Predicate} object.
      */
     public void filter(Predicate<PlaylistItem> filterPredicate) {
-        this.filterPredicate = filterPredicate;
-        filteredPlaylist.clear();
-        if (playMode == PlayMode.SHUFFLE) {
-            shuffledList.clear();
-            shuffledIndex = 0;
-        }
-        for (PlaylistItem pli : cachedPlaylist) {
-            if (filterPredicate.evaluate(pli)) {
-                filteredPlaylist.add(pli);
-                if (playMode == PlayMode.SHUFFLE) {
-                    addToShuffledList(pli);
+        beginUpdate();
+        try {
+            this.filterPredicate = filterPredicate;
+            filteredPlaylist.clear();
+            filteredPositions.clear();
+            filteredPositionsValid = true;
+            for (PlaylistItem pli : cachedPlaylist) {
+                if (filterPredicate.evaluate(pli)) {
+                    appendFiltered(pli);
                 }
             }
+            if (playMode == PlayMode.SHUFFLE) {
+                shuffle();
+            }
+            recordAllChanged();
+            setModified(true);
+        } finally {
+            commitUpdate();
+        }
+    }
+
+    /**
+     * Filters the entire playlist based on the given predicate, replacing the
+     * filtered items with the given ones at once. The items must be those of
+     * the playlist matching the predicate, computed beforehand, so that the
+     * predicate does not need to be evaluated again.
+     *
+     * @param filterPredicate A {@link Predicate} object.
+     * @param filteredItems The items matching the predicate, in playlist order.
+     */
+    public void filter(Predicate<PlaylistItem> filterPredicate, List<PlaylistItem> filteredItems) {
+        beginUpdate();
+        try {
+            this.filterPredicate = filterPredicate;
+            filteredPlaylist.clear();
+            filteredPlaylist.addAll(filteredItems);
+            filteredPositionsValid = false;
+            if (playMode == PlayMode.SHUFFLE) {
+                shuffle();
+            }
+            recordAllChanged();
+            setModified(true);
+        } finally {
+            commitUpdate();
         }
-        setModified(true);
     }
 
     /**
@@ -294,33 +497,57 @@ public class Playlist {
      * @param toPos The new position.
      */
     public void moveItem(int fromPos, int toPos) {
-        int newIndex = cachedPlaylist.indexOf(filteredPlaylist.get(toPos));
-        PlaylistItem pli = filteredPlaylist.remove(fromPos);
-        if (pli != null) {
-            filteredPlaylist.add(toPos, pli);
-            if (cachedPlaylist.remove(pli)) {
-                cachedPlaylist.add(newIndex, pli);
+        beginUpdate();
+        try {
+            int newIndex = cachedPlaylist.indexOf(filteredPlaylist.get(toPos));
+            PlaylistItem pli = filteredPlaylist.remove(fromPos);
+            if (pli != null) {
+                filteredPlaylist.add(toPos, pli);
+                filteredPositionsValid = false;
+                if (cachedPlaylist.remove(pli)) {
+                    cachedPlaylist.add(newIndex, pli);
+                }
             }
+            recordRange(Range.Type.UPDATED, Math.min(fromPos, toPos), Math.max(fromPos, toPos));
+            modCount++;
+            setModified(true);
+        } finally {
+            commitUpdate();
         }
-        setModified(true);
     }
 
     /**
      * Shuffles items in the playlist randomly.
      */
     public void randomize() {
-        Collections.shuffle(cachedPlaylist);
-        Collections.shuffle(filteredPlaylist);
-        setModified(true);
+        beginUpdate();
+        try {
+            Collections.shuffle(cachedPlaylist);
+            Collections.shuffle(filteredPlaylist);
+            filteredPositionsValid = false;
+            recordAllChanged();
+            modCount++;
+            setModified(true);
+        } finally {
+            commitUpdate();
+        }
     }
 
     /**
      * Reverses the order of the items in the playlist.
      */
     public void reverse() {
-        Collections.reverse(cachedPlaylist);
-        Collections.reverse(filteredPlaylist);
-        setModified(true);
+        beginUpdate();
+        try {
+            Collections.reverse(cachedPlaylist);
+            Collections.reverse(filteredPlaylist);
+            filteredPositionsValid = false;
+            recordAllChanged();
+            modCount++;
+            setModified(true);
+        } finally {
+            commitUpdate();
+        }
     }
 
     /**
@@ -391,6 +618,31 @@ public class Playlist {
         }
     }
 
+    /**
+     * Returns the playlist item that {@link #nextCursor()} would move to,
+     * without moving the cursor.
+     *
+     * @return A playlist item or <code>null</code> if the playlist is empty.
+     */
+    public PlaylistItem peekNextCursor() {
+        if (playMode == PlayMode.SHUFFLE) {
+            if (shuffledList.isEmpty()) {
+                return null;
+            }
+            return shuffledList.get((shuffledIndex + 1 > shuffledList.size() - 1) ? 0 : shuffledIndex + 1);
+        } else {
+            if (isEmpty()) {
+                return null;
+            }
+            int cursorPos = getCursorPosition();
+            cursorPos++;
+            if (cursorPos > size() - 1) {
+                cursorPos = 0;
+            }
+            return getItemAt(cursorPos);
+        }
+    }
+
     /**
      * Computes cursor position (previous).
      */
@@ -434,11 +686,11 @@ public class Playlist {
     public void setCursor(PlaylistItem newCursor) {
         cursor = newCursor;
         if ((playMode == PlayMode.SHUFFLE) && (cursor != null)) {
-            if (shuffledList.size() > 1
-                    && shuffledList.get(shuffledIndex) != cursor) {
+            Integer cursorShuffledIndex = shuffledPositions.get(cursor);
+            if (shuffledList.size() > 1 && cursorShuffledIndex != null
+                    && cursorShuffledIndex != shuffledIndex) {
                 shuffledIndex = (++shuffledIndex > shuffledList.size() - 1) ? 0 : shuffledIndex;
-                Collections.swap(shuffledList, shuffledIndex,
-                        shuffledList.indexOf(cursor));
+                swapShuffled(shuffledIndex, cursorShuffledIndex);
             }
         }
     }
@@ -462,31 +714,122 @@ public class Playlist {
     }
 
     /**
-     * Adds the specified playlist item to the shuffled list in a random position.
+     * Builds the shuffled list from the filtered items with a Fisher-Yates
+     * shuffle, starting with the cursor if it is one of them.
+     */
+    private void shuffle() {
+        shuffledList.clear();
+        shuffledList.addAll(filteredPlaylist);
+        for (int i = shuffledList.size() - 1; i > 0; i--) {
+            Collections.swap(shuffledList, i, rnd.nextInt(i + 1));
+        }
+        shuffledPositions.clear();
+        for (int i = 0, size = shuffledList.size(); i < size; i++) {
+            shuffledPositions.put(shuffledList.get(i), i);
+        }
+        Integer cursorShuffledIndex = shuffledPositions.get(cursor);
+        if (cursorShuffledIndex != null) {
+            swapShuffled(0, cursorShuffledIndex);
+        }
+        shuffledIndex = 0;
+    }
+
+    /**
+     * Adds the specified playlist item to the shuffled list in a random
+     * position after the current one.
      *
      * @param item A playlist item.
      */
     private void addToShuffledList(PlaylistItem item) {
-        int randomIndex = shuffledIndex + rnd.nextInt(shuffledList.size() - shuffledIndex + 1);
-        shuffledList.add(randomIndex, item);
+        int lastIndex = shuffledList.size();
+        shuffledList.add(item);
+        shuffledPositions.put(item, lastIndex);
+        if (lastIndex > shuffledIndex + 1) {
+            int randomIndex = shuffledIndex + 1 + rnd.nextInt(lastIndex - shuffledIndex);
+            swapShuffled(randomIndex, lastIndex);
+        }
     }
 
     /**
-     * Removes the first occurrence of the specified playlist item from the
-     * shuffled list, if it is present.
+     * Removes the specified playlist item from the shuffled list, if it is
+     * present. The hole is filled by moving at most three items, so that the
+     * items already played stay before the current one and those to be
+     * played after it.
      *
      * @param item A playlist item.
      */
     private void removeFromShuffledList(PlaylistItem item) {
-        shuffledList.remove(item);
+        Integer index = shuffledPositions.remove(item);
+        if (index == null) {
+            return;
+        }
+        int lastIndex = shuffledList.size() - 1;
+        if (index < shuffledIndex) {
+            moveShuffled(shuffledIndex - 1, index);
+            moveShuffled(shuffledIndex, shuffledIndex - 1);
+            moveShuffled(lastIndex, shuffledIndex);
+            shuffledIndex--;
+        } else {
+            moveShuffled(lastIndex, index);
+            if (index == shuffledIndex) {
+                // The next item is now at the current index.
+                shuffledIndex = ((shuffledIndex == 0) ? lastIndex : shuffledIndex) - 1;
+            }
+        }
+        shuffledList.remove(lastIndex);
         if (shuffledList.isEmpty()) {
             shuffledIndex = 0;
-        } else {
-            int maxIndex = shuffledList.size() - 1;
-            shuffledIndex = (shuffledIndex > maxIndex) ? maxIndex : shuffledIndex;
         }
     }
 
+    /**
+     * Swaps two items of the shuffled list.
+     */
+    private void swapShuffled(int i, int j) {
+        PlaylistItem item = shuffledList.get(i);
+        shuffledList.set(i, shuffledList.get(j));
+        shuffledList.set(j, item);
+        shuffledPositions.put(shuffledList.get(i), i);
+        shuffledPositions.put(item, j);
+    }
+
+    /**
+     * Moves an item of the shuffled list over another position.
+     */
+    private void moveShuffled(int from, int to) {
+        if (from != to) {
+            PlaylistItem item = shuffledList.get(from);
+            shuffledList.set(to, item);
+            shuffledPositions.put(item, to);
+        }
+    }
+
+    /**
+     * Removes an item from the filtered list, if it is present.
+     *
+     * @param item A playlist item.
+     */
+    private void removeFiltered(PlaylistItem item) {
+        int index = indexOf(item);
+        if (index >= 0) {
+            filteredPlaylist.remove(index);
+            filteredPositionsValid = false;
+            recordRange(Range.Type.DELETED, index, index);
+        }
+    }
+
+    /**
+     * Appends an item to the filtered list.
+     *
+     * @param item A playlist item.
+     */
+    private void appendFiltered(PlaylistItem item) {
+        if (filteredPositionsValid && !filteredPositions.containsKey(item)) {
+            filteredPositions.put(item, filteredPlaylist.size());
+        }
+        filteredPlaylist.add(item);
+    }
+
     /**
      * Returns a randomly generated cursor position. This method makes sure that
      * all playlist items of this playlist will be selected once before
@@ -509,13 +852,23 @@ public class Playlist {
     }
 
     /**
-     * Returns the index of the specified playlist item.
+     * Returns the index of the specified playlist item. The position index
+     * is rebuilt here after a change, so that a series of changes costs a
+     * single rebuild.
      *
      * @param item A playlist item.
      * @return An integer value.
      */
     public int indexOf(PlaylistItem item) {
-        return filteredPlaylist.indexOf(item);
+        if (!filteredPositionsValid) {
+            filteredPositions.clear();
+            for (int i = filteredPlaylist.size() - 1; i >= 0; i--) {
+                filteredPositions.put(filteredPlaylist.get(i), i);
+            }
+            filteredPositionsValid = true;
+        }
+        Integer index = filteredPositions.get(item);
+        return (index == null) ? -1 : index;
     }
 
     /**
@@ -527,6 +880,17 @@ public class Playlist {
         return isModified;
     }
 
+    /**
+     * Returns the number of structural modifications of the playlist, that
+     * is items added, removed or reordered. It tells whether a snapshot of
+     * the items is still up to date.
+     *
+     * @return An integer value.
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
     /**
      * Checks if the playlist is empty.
      *
@@ -570,29 +934,83 @@ public class Playlist {
     }
 
     /**
-     * Notifies all listeners that a playlist item has been added.
+     * Records an item added by the current update.
      *
-     * @param item The playlist item added.
+     * @param item A playlist item.
      */
-    private void fireItemAddedEvent(PlaylistItem item) {
-        PlaylistEvent event = new PlaylistEvent(this, item);
-        for (PlaylistListener listener : listeners) {
-            listener.playlistItemAdded(event);
+    private void recordAdded(PlaylistItem item) {
+        if (!pendingRemovedItems.remove(item)) {
+            pendingAddedItems.add(item);
+        }
+        pendingChange = true;
+    }
+
+    /**
+     * Records an item removed by the current update.
+     *
+     * @param item A playlist item.
+     */
+    private void recordRemoved(PlaylistItem item) {
+        if (!pendingAddedItems.remove(item)) {
+            pendingRemovedItems.add(item);
+        }
+        pendingChange = true;
+    }
+
+    /**
+     * Records a range of filtered items changed by the current update,
+     * merging it with the previous one when possible. Past a number of
+     * ranges, the filtered items are considered changed as a whole.
+     *
+     * @param type The type of the change.
+     * @param first The first position.
+     * @param last The last position.
+     */
+    private void recordRange(Range.Type type, int first, int last) {
+        if (first <= last) {
+            recordRange(new Range(type, first, last));
         }
-        logger.info("Playlist item added: {}", item);
+    }
+
+    private void recordRange(Range range) {
+        pendingChange = true;
+        if (pendingRanges == null) {
+            return;
+        }
+        if (pendingRanges.isEmpty() || !pendingRanges.get(pendingRanges.size() - 1).merge(range)) {
+            pendingRanges.add(range);
+            if (pendingRanges.size() > MAX_RANGES) {
+                pendingRanges = null;
+            }
+        }
+    }
+
+    /**
+     * Records that the filtered items changed as a whole.
+     */
+    private void recordAllChanged() {
+        pendingChange = true;
+        pendingRanges = null;
+    }
+
+    private void resetPendingChange() {
+        pendingChange = false;
+        pendingAddedItems = Collections.newSetFromMap(new IdentityHashMap<PlaylistItem, Boolean>());
+        pendingRemovedItems = Collections.newSetFromMap(new IdentityHashMap<PlaylistItem, Boolean>());
+        pendingRanges = new ArrayList<Range>();
     }
 
     /**
-     * Notifies all listeners that a playlist item has been removed.
+     * Notifies all listeners that the playlist has changed.
      *
-     * @param item The playlist item removed.
+     * @param event The event describing the changes.
      */
-    private void fireItemRemovedEvent(PlaylistItem item) {
-        PlaylistEvent event = new PlaylistEvent(this, item);
+    private void fireChangedEvent(PlaylistEvent event) {
         for (PlaylistListener listener : listeners) {
-            listener.playlistItemRemoved(event);
+            listener.playlistChanged(event);
         }
-        logger.info("Playlist item removed: {}", item);
+        logger.info("Playlist changed: {} items added, {} items removed",
+                event.getAddedItems().size(), event.getRemovedItems().size());
     }
 
     /**
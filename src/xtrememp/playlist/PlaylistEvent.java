@@ -18,15 +18,24 @@
  */
 package xtrememp.playlist;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EventObject;
+import java.util.List;
 
 /**
+ * Playlist event. A change event describes all the changes made to the
+ * playlist by one operation or one update, the items added and removed and
+ * the affected ranges of the filtered items, in the order they were made.
  *
  * @author Besmir Beqiri
  */
 public class PlaylistEvent extends EventObject {
 
     protected PlaylistItem item;
+    protected Collection<PlaylistItem> addedItems;
+    protected Collection<PlaylistItem> removedItems;
+    protected List<Range> ranges;
 
     public PlaylistEvent(Object source) {
         this(source, null);
@@ -35,9 +44,121 @@ public class PlaylistEvent extends EventObject {
     public PlaylistEvent(Object source, PlaylistItem item) {
         super(source);
         this.item = item;
+        this.addedItems = Collections.emptyList();
+        this.removedItems = Collections.emptyList();
+        this.ranges = Collections.emptyList();
+    }
+
+    public PlaylistEvent(Object source, Collection<PlaylistItem> addedItems,
+            Collection<PlaylistItem> removedItems, List<Range> ranges) {
+        super(source);
+        this.addedItems = addedItems;
+        this.removedItems = removedItems;
+        this.ranges = ranges;
     }
 
     public PlaylistItem getPlaylistItem() {
         return item;
     }
+
+    /**
+     * Returns the items added to the playlist.
+     *
+     * @return A collection of playlist items.
+     */
+    public Collection<PlaylistItem> getAddedItems() {
+        return addedItems;
+    }
+
+    /**
+     * Returns the items removed from the playlist.
+     *
+     * @return A collection of playlist items.
+     */
+    public Collection<PlaylistItem> getRemovedItems() {
+        return removedItems;
+    }
+
+    /**
+     * Returns the ranges of filtered items inserted, deleted or updated, to
+     * be applied in order.
+     *
+     * @return A list of ranges, or <code>null</code> if the filtered items
+     *         changed as a whole.
+     */
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * A range of positions in the filtered items.
+     */
+    public static class Range {
+
+        public enum Type {
+
+            INSERTED,
+            DELETED,
+            UPDATED
+        }
+        private final Type type;
+        private int first;
+        private int last;
+
+        public Range(Type type, int first, int last) {
+            this.type = type;
+            this.first = first;
+            this.last = last;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getLast() {
+            return last;
+        }
+
+        /**
+         * Merges the given range into this one if the result is equivalent
+         * to applying both in order.
+         *
+         * @param range The range following this one.
+         * @return <code>true</code> if the range was merged, else <code>false</code>.
+         */
+        boolean merge(Range range) {
+            if (range.type != type) {
+                return false;
+            }
+            int length = range.last - range.first + 1;
+            switch (type) {
+                case INSERTED:
+                    if (range.first >= first && range.first <= last + 1) {
+                        last += length;
+                        return true;
+                    }
+                    return false;
+                case DELETED:
+                    if (range.first == first) {
+                        last += length;
+                        return true;
+                    } else if (range.last == first - 1) {
+                        first = range.first;
+                        return true;
+                    }
+                    return false;
+                default:
+                    if (range.first <= last + 1 && range.last >= first - 1) {
+                        first = Math.min(first, range.first);
+                        last = Math.max(last, range.last);
+                        return true;
+                    }
+                    return false;
+            }
+        }
+    }
 }
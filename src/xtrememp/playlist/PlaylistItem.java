@@ -19,6 +19,7 @@
 package xtrememp.playlist;
 
 import java.util.concurrent.TimeUnit;
+import xtrememp.tag.StringPool;
 import xtrememp.tag.TagInfo;
 import xtrememp.tag.TagInfoFactory;
 import xtrememp.util.Utilities;
@@ -35,7 +36,7 @@ public class PlaylistItem {
     private String location;
     private long duration = 0;
     private boolean isFile = false;
-    private TagInfo tagInfo;
+    private volatile TagInfo tagInfo;
     private String formattedName;
     private String formatedLength;
 
@@ -108,6 +109,16 @@ public class PlaylistItem {
         return tagInfo;
     }
 
+    /**
+     * Checks if the tag info has been loaded, so that {@link #getTagInfo()}
+     * returns without reading the file.
+     *
+     * @return <code>true</code> if the tag info is loaded, else <code>false</code>.
+     */
+    public boolean isTagInfoLoaded() {
+        return tagInfo != null;
+    }
+
     public void setFormattedName(String formattedName) {
         this.name = formattedName;
         this.formattedName = formattedName;
@@ -168,7 +179,8 @@ public class PlaylistItem {
                 result = String.format("%02d:%02d", min, sec);
             }
         }
-        return result;
+        // Most tracks of a large playlist share a few thousand lengths.
+        return StringPool.intern(result);
     }
 
     /**
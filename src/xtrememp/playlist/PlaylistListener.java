@@ -26,9 +26,13 @@ import java.util.EventListener;
  */
 public interface PlaylistListener extends EventListener {
 
-    public void playlistItemAdded(PlaylistEvent e);
-
-    public void playlistItemRemoved(PlaylistEvent e);
+    /**
+     * Invoked once for each operation or update which added, removed or
+     * reordered playlist items.
+     *
+     * @param e A {@link PlaylistEvent} object.
+     */
+    public void playlistChanged(PlaylistEvent e);
 
     public void playModeChanged(PlaylistEvent e);
 }
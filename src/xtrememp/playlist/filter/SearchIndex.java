@@ -0,0 +1,331 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.playlist.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import xtrememp.playlist.PlaylistEvent;
+import xtrememp.playlist.PlaylistItem;
+import xtrememp.playlist.PlaylistListener;
+import xtrememp.tag.TagInfo;
+
+/**
+ * Trigram index over the searchable tag fields of the playlist items. An
+ * item matches a query if its track, title, artist, album and genre,
+ * concatenated and lower cased, contain the query. Candidates are taken from
+ * the rarest trigram of the query, or from the previous result when the
+ * query extends the previous one, and then verified.
+ * <p>
+ * Trigrams are hashed into a fixed number of buckets; collisions only add
+ * candidates which fail the verification. Registered as a playlist listener,
+ * the index follows items being added and removed. It is thread-safe, so
+ * that searches can run off the event dispatch thread.
+ * <p>
+ * The index never reads tag info itself, since items are added on the event
+ * dispatch thread. An item whose tags are not loaded yet is indexed on its
+ * name, and keyed again on its tags by {@link #update(PlaylistItem)} once
+ * they are loaded, or at the latest by the next search.
+ *
+ * @author Besmir Beqiri
+ */
+public class SearchIndex implements PlaylistListener {
+
+    private static final int BUCKET_BITS = 16;
+    private static final int BUCKET_MASK = (1 << BUCKET_BITS) - 1;
+    private static final int MIN_COMPACT_SIZE = 1024;
+    private final Map<PlaylistItem, Integer> ids = new IdentityHashMap<>();
+    private final int[][] postings = new int[1 << BUCKET_BITS][];
+    private final int[] postingSizes = new int[1 << BUCKET_BITS];
+    private final BitSet live = new BitSet();
+    private final BitSet untagged = new BitSet();
+    private String[] keys = new String[MIN_COMPACT_SIZE];
+    private PlaylistItem[] items = new PlaylistItem[MIN_COMPACT_SIZE];
+    private int nextId = 0;
+    private int removedCount = 0;
+    private int generation = 0;
+    private String lastQuery;
+    private BitSet lastResult;
+
+    /**
+     * Adds an item to the index.
+     *
+     * @param item A playlist item.
+     */
+    public void add(PlaylistItem item) {
+        if (item == null) {
+            return;
+        }
+        boolean tagged = item.isTagInfoLoaded();
+        String key = getSearchKey(item);
+        synchronized (this) {
+            if (!ids.containsKey(item)) {
+                add(item, key, tagged);
+                // The previous result does not cover the new item.
+                lastQuery = null;
+            }
+        }
+    }
+
+    /**
+     * Keys an item on its tags, once they are loaded. It is meant to be
+     * called by the thread loading the tags.
+     *
+     * @param item A playlist item.
+     */
+    public void update(PlaylistItem item) {
+        if (item == null || !item.isTagInfoLoaded()) {
+            return;
+        }
+        String key = getSearchKey(item);
+        synchronized (this) {
+            Integer id = ids.get(item);
+            if (id != null && untagged.get(id)) {
+                rekey(item, key);
+            }
+        }
+    }
+
+    /**
+     * Adds a collection of items to the index.
+     *
+     * @param c A collection of items.
+     */
+    public void addAll(Collection<? extends PlaylistItem> c) {
+        for (PlaylistItem item : c) {
+            add(item);
+        }
+    }
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param item A playlist item.
+     */
+    public synchronized void remove(PlaylistItem item) {
+        Integer id = ids.remove(item);
+        if (id != null) {
+            live.clear(id);
+            untagged.clear(id);
+            keys[id] = null;
+            items[id] = null;
+            removedCount++;
+            if (removedCount > MIN_COMPACT_SIZE && removedCount > ids.size()) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Removes all items from the index.
+     */
+    public synchronized void clear() {
+        ids.clear();
+        live.clear();
+        untagged.clear();
+        Arrays.fill(postings, null);
+        Arrays.fill(postingSizes, 0);
+        keys = new String[MIN_COMPACT_SIZE];
+        items = new PlaylistItem[MIN_COMPACT_SIZE];
+        nextId = 0;
+        removedCount = 0;
+        generation++;
+        lastQuery = null;
+    }
+
+    /**
+     * Returns a predicate matching the items whose search key contains the
+     * given query, ignoring case.
+     *
+     * @param query The search string.
+     * @return A {@link Predicate} object.
+     */
+    public synchronized Predicate<PlaylistItem> search(String query) {
+        updateUntagged();
+        final String q = query.toLowerCase(Locale.getDefault());
+        final BitSet result = new BitSet(nextId);
+        if (lastQuery != null && q.contains(lastQuery)) {
+            // Refine the previous result.
+            for (int id = lastResult.nextSetBit(0); id >= 0; id = lastResult.nextSetBit(id + 1)) {
+                verify(id, q, result);
+            }
+        } else if (q.length() >= 3) {
+            int bucket = bucket(q, 0);
+            for (int i = 1, n = q.length() - 2; i < n; i++) {
+                int b = bucket(q, i);
+                if (postingSizes[b] < postingSizes[bucket]) {
+                    bucket = b;
+                }
+            }
+            int[] posting = postings[bucket];
+            for (int i = 0, n = postingSizes[bucket]; i < n; i++) {
+                verify(posting[i], q, result);
+            }
+        } else {
+            for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+                verify(id, q, result);
+            }
+        }
+        lastQuery = q;
+        lastResult = result;
+        final int searchGeneration = generation;
+        final int searchLimit = nextId;
+        return new Predicate<PlaylistItem>() {
+
+            @Override
+            public boolean evaluate(PlaylistItem item) {
+                synchronized (SearchIndex.this) {
+                    Integer id = ids.get(item);
+                    if (id != null && searchGeneration == generation && id < searchLimit) {
+                        return result.get(id);
+                    }
+                }
+                // Added since the search.
+                return getSearchKey(item).contains(q);
+            }
+        };
+    }
+
+    @Override
+    public void playlistChanged(PlaylistEvent e) {
+        for (PlaylistItem item : e.getRemovedItems()) {
+            remove(item);
+        }
+        addAll(e.getAddedItems());
+    }
+
+    @Override
+    public void playModeChanged(PlaylistEvent e) {
+    }
+
+    /**
+     * Returns the lower cased text an item is searched in: its tags if they
+     * are loaded, else its name. It never reads the tags from the file.
+     *
+     * @param item A playlist item.
+     * @return A string.
+     */
+    protected String getSearchKey(PlaylistItem item) {
+        TagInfo tagInfo = item.isTagInfoLoaded() ? item.getTagInfo() : null;
+        String key;
+        if (tagInfo != null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(tagInfo.getTrack()).append(tagInfo.getTitle()).append(
+                    tagInfo.getArtist()).append(tagInfo.getAlbum()).append(
+                    tagInfo.getGenre());
+            key = sb.toString();
+        } else {
+            key = item.getFormattedName();
+        }
+        return (key == null) ? "" : key.toLowerCase(Locale.getDefault());
+    }
+
+    private void add(PlaylistItem item, String key, boolean tagged) {
+        int id = nextId++;
+        if (id == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * id);
+            items = Arrays.copyOf(items, 2 * id);
+        }
+        keys[id] = key;
+        items[id] = item;
+        live.set(id);
+        untagged.set(id, !tagged);
+        ids.put(item, id);
+        for (int i = 0, n = key.length() - 2; i < n; i++) {
+            int b = bucket(key, i);
+            int size = postingSizes[b];
+            int[] posting = postings[b];
+            if (size > 0 && posting[size - 1] == id) {
+                continue;
+            }
+            if (posting == null) {
+                posting = postings[b] = new int[4];
+            } else if (size == posting.length) {
+                posting = postings[b] = Arrays.copyOf(posting, 2 * size);
+            }
+            posting[size] = id;
+            postingSizes[b] = size + 1;
+        }
+    }
+
+    /**
+     * Replaces the key of an item, under a new id.
+     */
+    private void rekey(PlaylistItem item, String key) {
+        remove(item);
+        add(item, key, true);
+        lastQuery = null;
+    }
+
+    /**
+     * Keys again the items whose tags have been loaded since they were
+     * added, by a thread that did not update the index.
+     */
+    private void updateUntagged() {
+        List<PlaylistItem> tagged = null;
+        for (int id = untagged.nextSetBit(0); id >= 0; id = untagged.nextSetBit(id + 1)) {
+            if (items[id].isTagInfoLoaded()) {
+                if (tagged == null) {
+                    tagged = new ArrayList<>();
+                }
+                tagged.add(items[id]);
+            }
+        }
+        if (tagged != null) {
+            for (PlaylistItem item : tagged) {
+                rekey(item, getSearchKey(item));
+            }
+        }
+    }
+
+    private void verify(int id, String q, BitSet result) {
+        String key = keys[id];
+        if (key != null && key.contains(q)) {
+            result.set(id);
+        }
+    }
+
+    /**
+     * Rebuilds the index without the removed items.
+     */
+    private void compact() {
+        List<PlaylistItem> liveItems = new ArrayList<>(ids.size());
+        List<String> liveKeys = new ArrayList<>(ids.size());
+        BitSet liveUntagged = new BitSet();
+        for (Map.Entry<PlaylistItem, Integer> entry : ids.entrySet()) {
+            liveUntagged.set(liveItems.size(), untagged.get(entry.getValue()));
+            liveItems.add(entry.getKey());
+            liveKeys.add(keys[entry.getValue()]);
+        }
+        clear();
+        for (int i = 0, n = liveItems.size(); i < n; i++) {
+            add(liveItems.get(i), liveKeys.get(i), !liveUntagged.get(i));
+        }
+    }
+
+    private static int bucket(String s, int i) {
+        int h = (s.charAt(i) * 31 + s.charAt(i + 1)) * 31 + s.charAt(i + 2);
+        return (h ^ (h >>> BUCKET_BITS)) & BUCKET_MASK;
+    }
+}
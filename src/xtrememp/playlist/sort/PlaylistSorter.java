@@ -0,0 +1,318 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.playlist.sort;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import xtrememp.playlist.PlaylistItem;
+import xtrememp.tag.TagInfo;
+import xtrememp.util.Utilities;
+
+/**
+ * Stable multi-key playlist sorter. The sort keys of every item are
+ * extracted once, track numbers and durations as numbers and texts as
+ * collation keys ignoring case, and an array of indexes is then sorted with
+ * a merge sort, split over several threads for large playlists. Tags that
+ * are not loaded yet are not read, since sorting runs on the event dispatch
+ * thread: such items sort on their name.
+ *
+ * @author Besmir Beqiri
+ */
+public class PlaylistSorter {
+
+    /**
+     * The fields a playlist can be sorted by.
+     */
+    public enum Field {
+
+        TRACK,
+        TITLE,
+        DURATION,
+        ARTIST,
+        ALBUM,
+        GENRE
+    }
+
+    /**
+     * A sort key: a field and a direction.
+     */
+    public static class Key {
+
+        private final Field field;
+        private final boolean ascending;
+
+        public Key(Field field, boolean ascending) {
+            this.field = field;
+            this.ascending = ascending;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public boolean isAscending() {
+            return ascending;
+        }
+    }
+    private static final int INSERTION_THRESHOLD = 32;
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final ForkJoinPool pool = new ForkJoinPool();
+    private final List<Key> keys;
+
+    /**
+     * @param keys the sort keys, by decreasing priority
+     */
+    public PlaylistSorter(List<Key> keys) {
+        this.keys = new ArrayList<>(keys);
+    }
+
+    /**
+     * @param field the field to sort by
+     * @param ascending the direction
+     */
+    public PlaylistSorter(Field field, boolean ascending) {
+        this(Collections.singletonList(new Key(field, ascending)));
+    }
+
+    /**
+     * @return the sort keys
+     */
+    public List<Key> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Returns the sorted order of the given items, leaving the list
+     * unchanged. Items with equal keys keep their relative order.
+     *
+     * @param items A list of playlist items.
+     * @return The indexes of the items in sorted order.
+     */
+    public int[] sort(List<PlaylistItem> items) {
+        int size = items.size();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        if (size < 2 || keys.isEmpty()) {
+            return order;
+        }
+        IndexComparator comparator = new IndexComparator(items);
+        int[] buffer = new int[size];
+        if (size < PARALLEL_THRESHOLD) {
+            mergeSort(order, buffer, 0, size, comparator);
+        } else {
+            pool.invoke(new SortTask(order, buffer, 0, size, comparator));
+        }
+        return order;
+    }
+
+    private static void mergeSort(int[] a, int[] buffer, int from, int to, IndexComparator c) {
+        if (to - from <= INSERTION_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int index = a[i];
+                int j = i;
+                for (; j > from && c.compare(a[j - 1], index) > 0; j--) {
+                    a[j] = a[j - 1];
+                }
+                a[j] = index;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(a, buffer, from, middle, c);
+        mergeSort(a, buffer, middle, to, c);
+        merge(a, buffer, from, middle, to, c);
+    }
+
+    private static void merge(int[] a, int[] buffer, int from, int middle, int to, IndexComparator c) {
+        if (c.compare(a[middle - 1], a[middle]) <= 0) {
+            // Already in order.
+            return;
+        }
+        System.arraycopy(a, from, buffer, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < middle && c.compare(buffer[i], buffer[j]) <= 0)) {
+                a[k] = buffer[i++];
+            } else {
+                a[k] = buffer[j++];
+            }
+        }
+    }
+
+    /**
+     * Sorts the two halves of a range in parallel, then merges them.
+     */
+    private static class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final IndexComparator comparator;
+
+        SortTask(int[] a, int[] buffer, int from, int to, IndexComparator comparator) {
+            this.a = a;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < PARALLEL_THRESHOLD) {
+                mergeSort(a, buffer, from, to, comparator);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SortTask(a, buffer, from, middle, comparator),
+                        new SortTask(a, buffer, middle, to, comparator));
+                merge(a, buffer, from, middle, to, comparator);
+            }
+        }
+    }
+
+    /**
+     * Compares items by their index, from the extracted keys.
+     */
+    private class IndexComparator {
+
+        private final long[][] numbers;
+        private final CollationKey[][] texts;
+        private final int[] directions;
+
+        IndexComparator(List<PlaylistItem> items) {
+            int size = items.size();
+            numbers = new long[keys.size()][];
+            texts = new CollationKey[keys.size()][];
+            directions = new int[keys.size()];
+            Collator collator = Collator.getInstance();
+            collator.setStrength(Collator.SECONDARY);
+            // Texts such as artists and albums are shared by many items.
+            Map<String, CollationKey> collationKeys = new HashMap<>();
+            for (int k = 0; k < keys.size(); k++) {
+                Field field = keys.get(k).getField();
+                directions[k] = keys.get(k).isAscending() ? 1 : -1;
+                if (field == Field.TRACK || field == Field.DURATION) {
+                    numbers[k] = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        numbers[k][i] = getNumber(items.get(i), field);
+                    }
+                } else {
+                    texts[k] = new CollationKey[size];
+                    for (int i = 0; i < size; i++) {
+                        String text = getText(items.get(i), field);
+                        CollationKey collationKey = collationKeys.get(text);
+                        if (collationKey == null) {
+                            collationKey = collator.getCollationKey(text);
+                            collationKeys.put(text, collationKey);
+                        }
+                        texts[k][i] = collationKey;
+                    }
+                }
+            }
+        }
+
+        int compare(int i, int j) {
+            for (int k = 0; k < directions.length; k++) {
+                int result;
+                if (numbers[k] != null) {
+                    long n1 = numbers[k][i];
+                    long n2 = numbers[k][j];
+                    result = (n1 < n2 ? -1 : (n1 == n2 ? 0 : 1));
+                } else {
+                    result = texts[k][i].compareTo(texts[k][j]);
+                }
+                if (result != 0) {
+                    return result * directions[k];
+                }
+            }
+            return 0;
+        }
+    }
+
+    private static long getNumber(PlaylistItem item, Field field) {
+        if (field == Field.DURATION) {
+            return item.getDuration();
+        }
+        long number = -1;
+        TagInfo tagInfo = getLoadedTagInfo(item);
+        if (tagInfo != null) {
+            // Leading digits, tracks may read as "3/12".
+            String track = tagInfo.getTrack();
+            if (!Utilities.isNullOrEmpty(track)) {
+                for (int i = 0, n = track.length(); i < n && number < Integer.MAX_VALUE; i++) {
+                    char c = track.charAt(i);
+                    if (c >= '0' && c <= '9') {
+                        number = Math.max(number, 0) * 10 + (c - '0');
+                    } else if (number >= 0 || !Character.isWhitespace(c)) {
+                        break;
+                    }
+                }
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Returns the tag info of an item if it is loaded, without reading it.
+     */
+    private static TagInfo getLoadedTagInfo(PlaylistItem item) {
+        return (item.isFile() && item.isTagInfoLoaded()) ? item.getTagInfo() : null;
+    }
+
+    private static String getText(PlaylistItem item, Field field) {
+        String text = null;
+        TagInfo tagInfo = getLoadedTagInfo(item);
+        if (tagInfo != null) {
+            switch (field) {
+                case TITLE:
+                    text = tagInfo.getTitle();
+                    break;
+                case ARTIST:
+                    text = tagInfo.getArtist();
+                    break;
+                case ALBUM:
+                    text = tagInfo.getAlbum();
+                    break;
+                case GENRE:
+                    text = tagInfo.getGenre();
+                    break;
+            }
+        }
+        if (field == Field.TITLE && Utilities.isNullOrEmpty(text)) {
+            text = item.getFormattedName();
+            if (Utilities.isNullOrEmpty(text)) {
+                text = item.getLocation();
+            }
+        }
+        return (text == null) ? "" : text;
+    }
+}
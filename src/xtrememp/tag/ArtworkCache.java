@@ -0,0 +1,148 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.tag;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.exceptions.CannotReadException;
+import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
+import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.TagException;
+import org.jaudiotagger.tag.images.Artwork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Least recently used cache of track artwork, bounded by the total size of
+ * the image data. Artwork is read from the file on a miss, so that tag info
+ * kept by the playlist does not hold any image.
+ *
+ * @author Besmir Beqiri
+ */
+public class ArtworkCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtworkCache.class);
+    public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+    private static final ArtworkCache instance = new ArtworkCache(DEFAULT_MAX_SIZE);
+    private final Map<String, Artwork> artworkMap = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxSize;
+    private long size = 0;
+
+    /**
+     * @param maxSize the maximum size of the cached image data in bytes
+     */
+    public ArtworkCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     *
+     * @return instance of ArtworkCache
+     */
+    public static ArtworkCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the artwork of the given file, reading it if it is not cached.
+     *
+     * @param location the file path
+     * @return artwork or null if none exist
+     */
+    public Artwork getArtwork(String location) {
+        synchronized (this) {
+            Artwork artwork = artworkMap.get(location);
+            if (artwork != null) {
+                return artwork;
+            }
+        }
+        // Read outside the lock, a concurrent miss only reads the file twice.
+        Artwork artwork = readArtwork(new File(location));
+        if (artwork != null) {
+            put(location, artwork);
+        }
+        return artwork;
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        trim();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        artworkMap.clear();
+        size = 0;
+    }
+
+    private synchronized void put(String location, Artwork artwork) {
+        long artworkSize = sizeOf(artwork);
+        if (artworkSize > maxSize) {
+            return;
+        }
+        Artwork old = artworkMap.put(location, artwork);
+        if (old != null) {
+            size -= sizeOf(old);
+        }
+        size += artworkSize;
+        trim();
+    }
+
+    /**
+     * Evicts the least recently used artwork until the cache fits.
+     */
+    private void trim() {
+        Iterator<Artwork> it = artworkMap.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= sizeOf(it.next());
+            it.remove();
+        }
+    }
+
+    private static long sizeOf(Artwork artwork) {
+        byte[] data = artwork.getBinaryData();
+        return (data == null) ? 0 : data.length;
+    }
+
+    private static Artwork readArtwork(File file) {
+        try {
+            AudioFile audioFile = AudioFileIO.read(file);
+            Tag tag = audioFile.getTag();
+            if (tag != null) {
+                return tag.getFirstArtwork();
+            }
+        } catch (CannotReadException | IOException | TagException | ReadOnlyFileException | InvalidAudioFrameException ex) {
+            logger.debug(ex.getMessage(), ex);
+        }
+        return null;
+    }
+}
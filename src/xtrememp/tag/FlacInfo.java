@@ -18,6 +18,8 @@
  */
 package xtrememp.tag;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -89,7 +91,7 @@ public class FlacInfo extends TagInfo {
                 genre = flacTag.getFirst(FieldKey.GENRE);
                 track = flacTag.getFirst(FieldKey.TRACK);
                 comment = flacTag.getFirst(FieldKey.COMMENT);
-                artwork = flacTag.getFirstArtwork();
+                hasArtwork = flacTag.getFirstArtwork() != null;
             }
         } catch (CannotReadException ex) {
             throw new IOException(ex);
@@ -182,4 +184,16 @@ public class FlacInfo extends TagInfo {
         sb.append("</html>");
         return sb.toString();
     }
+
+    @Override
+    protected void writeFields(DataOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(bitspersample);
+    }
+
+    @Override
+    protected void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        bitspersample = in.readInt();
+    }
 }
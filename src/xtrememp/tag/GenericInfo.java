@@ -18,6 +18,8 @@
  */
 package xtrememp.tag;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -82,7 +84,7 @@ public class GenericInfo extends TagInfo {
                 genre = tag.getFirst(FieldKey.GENRE);
                 track = tag.getFirst(FieldKey.TRACK);
                 comment = tag.getFirst(FieldKey.COMMENT);
-                artwork = tag.getFirstArtwork();
+                hasArtwork = tag.getFirstArtwork() != null;
             }
         } catch (CannotReadException ex) {
             throw new IOException(ex);
@@ -157,4 +159,18 @@ public class GenericInfo extends TagInfo {
         sb.append("</html>");
         return sb.toString();
     }
+
+    @Override
+    protected void writeFields(DataOutput out) throws IOException {
+        super.writeFields(out);
+        out.writeInt(bitspersample);
+        out.writeInt(framesize);
+    }
+
+    @Override
+    protected void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        bitspersample = in.readInt();
+        framesize = in.readInt();
+    }
 }
@@ -21,6 +21,8 @@ package xtrememp.tag;
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -115,7 +117,7 @@ public class MpegInfo extends TagInfo {
                 genre = mpegTag.getFirst(FieldKey.GENRE);
                 track = mpegTag.getFirst(FieldKey.TRACK);
                 comment = mpegTag.getFirst(FieldKey.COMMENT);
-                artwork = mpegTag.getFirstArtwork();
+                hasArtwork = mpegTag.getFirstArtwork() != null;
             }
         } catch (CannotReadException ex) {
             throw new IOException(ex);
@@ -355,4 +357,44 @@ public class MpegInfo extends TagInfo {
         sb.append("</html>");
         return sb.toString();
     }
+
+    @Override
+    protected void internFields() {
+        super.internFields();
+        encoder = StringPool.intern(encoder);
+        version = StringPool.intern(version);
+        layer = StringPool.intern(layer);
+        emphasis = StringPool.intern(emphasis);
+        vendor = StringPool.intern(vendor);
+    }
+
+    @Override
+    protected void writeFields(DataOutput out) throws IOException {
+        super.writeFields(out);
+        writeString(out, encoder);
+        writeString(out, version);
+        writeString(out, layer);
+        writeString(out, emphasis);
+        writeString(out, vendor);
+        out.writeBoolean(copyright);
+        out.writeBoolean(crc);
+        out.writeBoolean(original);
+        out.writeBoolean(privat);
+        out.writeBoolean(vbr);
+    }
+
+    @Override
+    protected void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        encoder = readString(in);
+        version = readString(in);
+        layer = readString(in);
+        emphasis = readString(in);
+        vendor = readString(in);
+        copyright = in.readBoolean();
+        crc = in.readBoolean();
+        original = in.readBoolean();
+        privat = in.readBoolean();
+        vbr = in.readBoolean();
+    }
 }
@@ -18,6 +18,8 @@
  */
 package xtrememp.tag;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -88,7 +90,7 @@ public class OggVorbisInfo extends TagInfo {
                 genre = vcTag.getFirst(FieldKey.GENRE);
                 track = vcTag.getFirst(FieldKey.TRACK);
                 comment = vcTag.getFirst(FieldKey.COMMENT);
-                artwork = vcTag.getFirstArtwork();
+                hasArtwork = vcTag.getFirstArtwork() != null;
             }
         } catch (CannotReadException ex) {
             throw new IOException(ex);
@@ -277,4 +279,32 @@ public class OggVorbisInfo extends TagInfo {
         sb.append("</html>");
         return sb.toString();
     }
+
+    @Override
+    protected void internFields() {
+        super.internFields();
+        vendor = StringPool.intern(vendor);
+    }
+
+    @Override
+    protected void writeFields(DataOutput out) throws IOException {
+        super.writeFields(out);
+        writeString(out, vendor);
+        out.writeInt(serial);
+        out.writeInt(version);
+        out.writeInt(minbitrate);
+        out.writeInt(maxbitrate);
+        out.writeInt(averagebitrate);
+    }
+
+    @Override
+    protected void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        vendor = readString(in);
+        serial = in.readInt();
+        version = in.readInt();
+        minbitrate = in.readInt();
+        maxbitrate = in.readInt();
+        averagebitrate = in.readInt();
+    }
 }
@@ -0,0 +1,59 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.tag;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Dictionary of the tag values shared by many tracks, such as artist, album
+ * or genre, so that a large playlist keeps a single copy of each value.
+ * Values no longer referenced by any tag info are reclaimed.
+ *
+ * @author Besmir Beqiri
+ */
+public final class StringPool {
+
+    private static final Map<String, WeakReference<String>> pool = new WeakHashMap<>();
+
+    private StringPool() {
+    }
+
+    /**
+     * Returns the pooled instance equal to the given string.
+     *
+     * @param s a string or null
+     * @return the pooled string, or null if s is null
+     */
+    public static String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        synchronized (pool) {
+            WeakReference<String> ref = pool.get(s);
+            String pooled = (ref == null) ? null : ref.get();
+            if (pooled == null) {
+                pool.put(s, new WeakReference<>(s));
+                pooled = s;
+            }
+            return pooled;
+        }
+    }
+}
@@ -18,10 +18,13 @@
  */
 package xtrememp.tag;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.Charset;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import org.jaudiotagger.tag.images.Artwork;
@@ -46,12 +49,17 @@ public abstract class TagInfo {
     protected String artist = null;
     protected String album = null;
     protected String comment = null;
-    protected Artwork artwork = null;
     protected int channelsAsNumber = AudioSystem.NOT_SPECIFIED;
     protected int sampleRateAsNumber = AudioSystem.NOT_SPECIFIED;
     protected long bitRateAsNumber = AudioSystem.NOT_SPECIFIED;
     protected long duration = AudioSystem.NOT_SPECIFIED;
     protected long size = AudioSystem.NOT_SPECIFIED;
+    /**
+     * True if the file has artwork, which is only read on demand.
+     */
+    protected boolean hasArtwork = false;
+    private static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     /**
      * Load tag information from an input stream.
@@ -254,6 +262,104 @@ public abstract class TagInfo {
      * @return artwork or null if none exist
      */
     public Artwork getArtwork(){
-        return artwork;
+        if (hasArtwork && location != null) {
+            return ArtworkCache.getInstance().getArtwork(location);
+        }
+        return null;
+    }
+
+    /**
+     * Write the tag information, without the artwork, to the cache.
+     *
+     * @param out
+     * @throws java.io.IOException
+     */
+    protected void writeFields(DataOutput out) throws IOException {
+        writeString(out, encodingType);
+        writeString(out, format);
+        writeString(out, location);
+        writeString(out, channels);
+        writeString(out, sampleRate);
+        writeString(out, bitRate);
+        writeString(out, track);
+        writeString(out, year);
+        writeString(out, genre);
+        writeString(out, title);
+        writeString(out, artist);
+        writeString(out, album);
+        writeString(out, comment);
+        out.writeInt(channelsAsNumber);
+        out.writeInt(sampleRateAsNumber);
+        out.writeLong(bitRateAsNumber);
+        out.writeLong(duration);
+        out.writeLong(size);
+        out.writeBoolean(hasArtwork);
+    }
+
+    /**
+     * Read the tag information written by {@link #writeFields(DataOutput)}.
+     *
+     * @param in
+     * @throws java.io.IOException
+     */
+    protected void readFields(DataInput in) throws IOException {
+        encodingType = readString(in);
+        format = readString(in);
+        location = readString(in);
+        channels = readString(in);
+        sampleRate = readString(in);
+        bitRate = readString(in);
+        track = readString(in);
+        year = readString(in);
+        genre = readString(in);
+        title = readString(in);
+        artist = readString(in);
+        album = readString(in);
+        comment = readString(in);
+        channelsAsNumber = in.readInt();
+        sampleRateAsNumber = in.readInt();
+        bitRateAsNumber = in.readLong();
+        duration = in.readLong();
+        size = in.readLong();
+        hasArtwork = in.readBoolean();
+    }
+
+    /**
+     * Replace the values shared by many tracks with pooled instances.
+     */
+    protected void internFields() {
+        encodingType = StringPool.intern(encodingType);
+        format = StringPool.intern(format);
+        channels = StringPool.intern(channels);
+        sampleRate = StringPool.intern(sampleRate);
+        bitRate = StringPool.intern(bitRate);
+        track = StringPool.intern(track);
+        year = StringPool.intern(year);
+        genre = StringPool.intern(genre);
+        artist = StringPool.intern(artist);
+        album = StringPool.intern(album);
+        comment = StringPool.intern(comment);
+    }
+
+    protected static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] b = s.getBytes(UTF_8);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    protected static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        } else if (length > MAX_STRING_LENGTH) {
+            throw new IOException("String too long: " + length);
+        }
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, UTF_8);
     }
 }
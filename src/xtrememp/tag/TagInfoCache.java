@@ -0,0 +1,253 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.tag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the tag information of local files. Entries are keyed
+ * by path and stay valid as long as the size and the modification time of
+ * the file do not change. The cache is stored in a compact binary file which
+ * is read once, on the first lookup. Only the entries used during the
+ * session and still matching their file are saved, so that the cache does
+ * not keep growing with files long gone.
+ *
+ * @author Besmir Beqiri
+ */
+public class TagInfoCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagInfoCache.class);
+    private static final int MAGIC = 0x58544943; // "XTIC"
+    private static final int VERSION = 1;
+    private static final byte MPEG = 1;
+    private static final byte OGG_VORBIS = 2;
+    private static final byte FLAC = 3;
+    private static final byte GENERIC = 4;
+    private final File cacheFile;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+    private volatile boolean modified = false;
+
+    /**
+     * @param cacheFile the file the cache is read from and saved to
+     */
+    public TagInfoCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Returns the cached tag info of the given file.
+     *
+     * @param file
+     * @return the tag info or null if not cached or out of date
+     */
+    public TagInfo get(File file) {
+        if (!loaded) {
+            load();
+        }
+        String path = file.getAbsolutePath();
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            if (entry.matches(file)) {
+                entry.used = true;
+                return entry.tagInfo;
+            }
+            entries.remove(path, entry);
+            modified = true;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the tag info of the given file.
+     *
+     * @param file
+     * @param tagInfo
+     */
+    public void put(File file, TagInfo tagInfo) {
+        if (getType(tagInfo) != 0) {
+            Entry entry = new Entry(file.length(), file.lastModified(), tagInfo);
+            entry.used = true;
+            entries.put(file.getAbsolutePath(), entry);
+            modified = true;
+        }
+    }
+
+    /**
+     * Reads the cache file, discarding it if it is not valid.
+     */
+    protected synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        if (cacheFile.exists()) {
+            long time = System.currentTimeMillis();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 64 * 1024))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Unknown tag cache format");
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = TagInfo.readString(in);
+                    long size = in.readLong();
+                    long lastModified = in.readLong();
+                    TagInfo tagInfo = newTagInfo(in.readByte());
+                    tagInfo.readFields(in);
+                    tagInfo.internFields();
+                    entries.put(path, new Entry(size, lastModified, tagInfo));
+                }
+                logger.info("Tag cache loaded: {} entries in {} ms", count, System.currentTimeMillis() - time);
+            } catch (IOException | RuntimeException ex) {
+                logger.error("Can't read tag cache", ex);
+                entries.clear();
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Removes the entries not used during the session and those whose file
+     * was deleted or changed.
+     *
+     * @return the number of entries removed
+     */
+    protected int prune() {
+        int count = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (!entry.used || !entry.matches(new File(e.getKey()))) {
+                if (entries.remove(e.getKey(), entry)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the cache file if the cache has been modified or pruned. The
+     * file is written aside and renamed, so that an interrupted save leaves
+     * the previous cache intact.
+     */
+    public synchronized void save() {
+        if (!loaded) {
+            return;
+        }
+        int pruned = prune();
+        if (!modified && pruned == 0) {
+            return;
+        }
+        if (pruned > 0) {
+            logger.info("Tag cache pruned: {} entries", pruned);
+        }
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                Map<String, Entry> snapshot = new HashMap<>(entries);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    Entry entry = e.getValue();
+                    TagInfo.writeString(out, e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeByte(getType(entry.tagInfo));
+                    entry.tagInfo.writeFields(out);
+                }
+            }
+            if (cacheFile.exists() && !cacheFile.delete()) {
+                throw new IOException("Can't replace " + cacheFile);
+            }
+            if (!tmpFile.renameTo(cacheFile)) {
+                throw new IOException("Can't rename " + tmpFile);
+            }
+            modified = false;
+        } catch (IOException ex) {
+            logger.error("Can't save tag cache", ex);
+            tmpFile.delete();
+        }
+    }
+
+    private static byte getType(TagInfo tagInfo) {
+        if (tagInfo instanceof MpegInfo) {
+            return MPEG;
+        } else if (tagInfo instanceof OggVorbisInfo) {
+            return OGG_VORBIS;
+        } else if (tagInfo instanceof FlacInfo) {
+            return FLAC;
+        } else if (tagInfo instanceof GenericInfo) {
+            return GENERIC;
+        }
+        return 0;
+    }
+
+    private static TagInfo newTagInfo(byte type) throws IOException {
+        switch (type) {
+            case MPEG:
+                return new MpegInfo();
+            case OGG_VORBIS:
+                return new OggVorbisInfo();
+            case FLAC:
+                return new FlacInfo();
+            case GENERIC:
+                return new GenericInfo();
+            default:
+                throw new IOException("Unknown tag info type: " + type);
+        }
+    }
+
+    private static final class Entry {
+
+        final long size;
+        final long lastModified;
+        final TagInfo tagInfo;
+        /**
+         * True once looked up or stored during this session.
+         */
+        volatile boolean used = false;
+
+        Entry(long size, long lastModified, TagInfo tagInfo) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.tagInfo = tagInfo;
+        }
+
+        /**
+         * Checks that the file still exists, with the same size and
+         * modification time.
+         */
+        boolean matches(File file) {
+            return size == file.length() && lastModified == file.lastModified() && file.isFile();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.net.URL;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import xtrememp.Settings;
 import xtrememp.util.Utilities;
 
 /**
@@ -36,6 +37,8 @@ public class TagInfoFactory {
 
     private static Logger logger = LoggerFactory.getLogger(TagInfoFactory.class);
     private static final TagInfoFactory instance = new TagInfoFactory();
+    private static final String TAG_CACHE_FILE = "tags.cache";
+    private final TagInfoCache cache = new TagInfoCache(new File(Settings.getCacheDir(), TAG_CACHE_FILE));
 
     /**
      * 
@@ -125,12 +128,31 @@ public class TagInfoFactory {
     }
 
     /**
-     * Get TagInfo for given file.
+     * Get TagInfo for given file, from the tag cache if the file has not
+     * changed since it was cached.
      *
      * @param file
      * @return TagInfo structure for given file
      */
     public TagInfo getTagInfo(File file) {
+        TagInfo taginfo = cache.get(file);
+        if (taginfo == null) {
+            taginfo = readTagInfo(file, true);
+        }
+        return taginfo;
+    }
+
+    /**
+     * Read TagInfo from given file, bypassing the tag cache.
+     *
+     * @param file
+     * @return TagInfo structure for given file
+     */
+    public TagInfo readTagInfo(File file) {
+        return readTagInfo(file, false);
+    }
+
+    private TagInfo readTagInfo(File file, boolean cacheable) {
         TagInfo taginfo = null;
         String filename = file.getName().toLowerCase();
         try {
@@ -144,6 +166,11 @@ public class TagInfoFactory {
                 taginfo = new GenericInfo();
             }
             taginfo.load(file);
+            taginfo.internFields();
+            if (cacheable) {
+                // Only completely loaded tag info is cached.
+                cache.put(file, taginfo);
+            }
         } catch (UnsupportedAudioFileException ex) {
             logger.debug(ex.getMessage(), ex);
         } catch (IOException ex) {
@@ -151,4 +178,11 @@ public class TagInfoFactory {
         }
         return taginfo;
     }
+
+    /**
+     * Save the tag cache if it has been modified.
+     */
+    public void saveCache() {
+        cache.save();
+    }
 }
@@ -24,6 +24,7 @@ import xtrememp.playlist.sort.AlbumComparator;
 import xtrememp.playlist.sort.ArtistComparator;
 import xtrememp.playlist.sort.DurationComparator;
 import xtrememp.playlist.sort.GenreComparator;
+import xtrememp.playlist.sort.PlaylistSorter;
 import xtrememp.playlist.sort.TitleComparator;
 import xtrememp.playlist.sort.TrackComparator;
 import static xtrememp.util.Utilities.tr;
@@ -34,20 +35,23 @@ import static xtrememp.util.Utilities.tr;
  */
 public enum PlaylistColumn {
 
-    TRACK(tr("MainFrame.PlaylistManager.PlaylistColumn.Track"), 100, new TrackComparator()),
-    TITLE(tr("MainFrame.PlaylistManager.PlaylistColumn.Title"), 850, new TitleComparator()),
-    DURATION(tr("MainFrame.PlaylistManager.PlaylistColumn.Duration"), 150, new DurationComparator()),
-    ARTIST(tr("MainFrame.PlaylistManager.PlaylistColumn.Artist"), 500, new ArtistComparator()),
-    ALBUM(tr("MainFrame.PlaylistManager.PlaylistColumn.Album"), 300, new AlbumComparator()),
-    GENRE(tr("MainFrame.PlaylistManager.PlaylistColumn.Genre"), 200, new GenreComparator());
+    TRACK(tr("MainFrame.PlaylistManager.PlaylistColumn.Track"), 100, new TrackComparator(), PlaylistSorter.Field.TRACK),
+    TITLE(tr("MainFrame.PlaylistManager.PlaylistColumn.Title"), 850, new TitleComparator(), PlaylistSorter.Field.TITLE),
+    DURATION(tr("MainFrame.PlaylistManager.PlaylistColumn.Duration"), 150, new DurationComparator(), PlaylistSorter.Field.DURATION),
+    ARTIST(tr("MainFrame.PlaylistManager.PlaylistColumn.Artist"), 500, new ArtistComparator(), PlaylistSorter.Field.ARTIST),
+    ALBUM(tr("MainFrame.PlaylistManager.PlaylistColumn.Album"), 300, new AlbumComparator(), PlaylistSorter.Field.ALBUM),
+    GENRE(tr("MainFrame.PlaylistManager.PlaylistColumn.Genre"), 200, new GenreComparator(), PlaylistSorter.Field.GENRE);
     private String displayName;
     private int width;
     private Comparator<PlaylistItem> comparator;
+    private PlaylistSorter.Field sortField;
 
-    PlaylistColumn(String displayName, int width, Comparator<PlaylistItem> comparator) {
+    PlaylistColumn(String displayName, int width, Comparator<PlaylistItem> comparator,
+            PlaylistSorter.Field sortField) {
         this.displayName = displayName;
         this.width = width;
         this.comparator = comparator;
+        this.sortField = sortField;
     }
 
     /**
@@ -75,6 +79,10 @@ public enum PlaylistColumn {
         return comparator;
     }
 
+    public PlaylistSorter.Field getSortField() {
+        return sortField;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(name());
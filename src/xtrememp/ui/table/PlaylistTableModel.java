@@ -19,79 +19,136 @@
 package xtrememp.ui.table;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import xtrememp.playlist.Playlist;
+import xtrememp.playlist.PlaylistEvent;
 import xtrememp.playlist.PlaylistItem;
+import xtrememp.playlist.PlaylistListener;
 import xtrememp.playlist.filter.Predicate;
+import xtrememp.playlist.sort.PlaylistSorter;
+import xtrememp.tag.TagInfo;
 import xtrememp.util.Utilities;
 
 /**
- * Playlist table model.
+ * Playlist table model. Changes of the playlist are notified to the table
+ * from the playlist events, one per operation or update. The values of the
+ * recently displayed rows are cached, and tag info is never read on the
+ * event dispatch thread.
  *
  * @author Besmir Beqiri
  */
-public class PlaylistTableModel extends AbstractTableModel {
+public class PlaylistTableModel extends AbstractTableModel implements PlaylistListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlaylistTableModel.class);
+    private static final int MAX_CACHED_ROWS = 2048;
 
     private final Playlist playlist;
     private final PlaylistTableColumnModel playlistTableColumnModel;
+    private final Map<PlaylistItem, String[]> rowCache;
+    private final Set<PlaylistItem> loadingItems;
+    private final Set<PlaylistItem> failedItems;
+    private final ExecutorService tagInfoExecutor;
 
     public PlaylistTableModel(Playlist playlist, PlaylistTableColumnModel playlistTableColumnModel) {
         this.playlist = playlist;
         this.playlistTableColumnModel = playlistTableColumnModel;
+        this.rowCache = new LinkedHashMap<PlaylistItem, String[]>(MAX_CACHED_ROWS, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PlaylistItem, String[]> eldest) {
+                return size() > MAX_CACHED_ROWS;
+            }
+        };
+        this.loadingItems = Collections.newSetFromMap(new IdentityHashMap<PlaylistItem, Boolean>());
+        this.failedItems = Collections.newSetFromMap(new IdentityHashMap<PlaylistItem, Boolean>());
+        this.tagInfoExecutor = Executors.newSingleThreadExecutor();
+        playlist.addPlaylistListener(this);
     }
 
     public void add(List<PlaylistItem> newItems) {
-        int first = playlist.size();
-        int last = first + newItems.size() - 1;
         playlist.addAll(newItems);
-        fireTableRowsInserted(first, last);
     }
 
     public void add(PlaylistItem item) {
-        int index = playlist.size();
         playlist.addItem(item);
-        fireTableRowsInserted(index, index);
     }
 
     public void removeItemAt(int index) {
         playlist.removeItemAt(index);
-        fireTableRowsDeleted(index, index);
     }
 
     public void removeAll(Collection<? extends PlaylistItem> c) {
         playlist.removeAll(c);
-        fireTableDataChanged();
     }
 
     public void clear() {
         playlist.clear();
-        fireTableDataChanged();
     }
 
     public void filter(Predicate<PlaylistItem> filterPredicate) {
         playlist.filter(filterPredicate);
-        fireTableDataChanged();
+    }
+
+    public void filter(Predicate<PlaylistItem> filterPredicate, List<PlaylistItem> filteredItems) {
+        playlist.filter(filterPredicate, filteredItems);
     }
 
     public void sort(Comparator<PlaylistItem> comparator) {
         playlist.sort(comparator);
-        fireTableDataChanged();
+    }
+
+    public void sort(PlaylistSorter sorter) {
+        playlist.sort(sorter);
     }
 
     public void randomize() {
         playlist.randomize();
-        fireTableDataChanged();
     }
 
     public void moveItem(int fromIndex, int toIndex) {
         playlist.moveItem(fromIndex, toIndex);
-        if (fromIndex < toIndex) {
-            fireTableRowsUpdated(fromIndex, toIndex);
-        } else {
-            fireTableRowsUpdated(toIndex, fromIndex);
+    }
+
+    @Override
+    public void playlistChanged(PlaylistEvent e) {
+        for (PlaylistItem item : e.getRemovedItems()) {
+            rowCache.remove(item);
+            failedItems.remove(item);
         }
+        List<PlaylistEvent.Range> ranges = e.getRanges();
+        if (ranges == null) {
+            fireTableDataChanged();
+            return;
+        }
+        for (PlaylistEvent.Range range : ranges) {
+            switch (range.getType()) {
+                case INSERTED:
+                    fireTableRowsInserted(range.getFirst(), range.getLast());
+                    break;
+                case DELETED:
+                    fireTableRowsDeleted(range.getFirst(), range.getLast());
+                    break;
+                case UPDATED:
+                    fireTableRowsUpdated(range.getFirst(), range.getLast());
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void playModeChanged(PlaylistEvent e) {
     }
 
     @Override
@@ -120,51 +177,108 @@ public class PlaylistTableModel extends AbstractTableModel {
             PlaylistTableColumn playlistTableColumn = playlistTableColumnModel.getColumn(columnIndex);
             PlaylistColumn playlistColumn = playlistTableColumn.getPlaylistColumn();
             PlaylistItem item = playlist.getItemAt(rowIndex);
-            StringBuilder sb = new StringBuilder();
+            String[] row = rowCache.get(item);
+            if (row == null) {
+                row = createRow(item);
+                rowCache.put(item, row);
+            }
+            return row[playlistColumn.ordinal()];
+        }
+        return null;
+    }
+
+    @Override
+    public void fireTableRowsUpdated(int firstRow, int lastRow) {
+        for (int i = Math.max(firstRow, 0), n = Math.min(lastRow, playlist.size() - 1); i <= n; i++) {
+            rowCache.remove(playlist.getItemAt(i));
+        }
+        super.fireTableRowsUpdated(firstRow, lastRow);
+    }
+
+    /**
+     * Formats the values of all the columns of a playlist item. If the tag
+     * info of a file is not loaded yet, it is loaded in the background and
+     * the row shows the name of the item meanwhile.
+     *
+     * @param item A playlist item.
+     * @return The column values, by {@link PlaylistColumn} ordinal.
+     */
+    private String[] createRow(PlaylistItem item) {
+        String[] row = new String[PlaylistColumn.values().length];
+        if (item.isFile() && item.isTagInfoLoaded()) {
+            TagInfo tagInfo = item.getTagInfo();
+            String trackStr = tagInfo.getTrack();
+            int trackNum = -1;
+            if (!Utilities.isNullOrEmpty(trackStr)) {
+                try {
+                    trackNum = Integer.parseInt(trackStr);
+                } catch (NumberFormatException ex) {
+                }
+            }
+            row[PlaylistColumn.TRACK.ordinal()] = (trackNum < 0) ? "" : String.valueOf(trackNum);
+            String title = tagInfo.getTitle();
+            row[PlaylistColumn.TITLE.ordinal()] = " " + (Utilities.isNullOrEmpty(title) ? item.getFormattedName() : title);
+            row[PlaylistColumn.DURATION.ordinal()] = item.getFormattedLength() + " ";
+            row[PlaylistColumn.ARTIST.ordinal()] = " " + tagInfo.getArtist();
+            row[PlaylistColumn.ALBUM.ordinal()] = " " + tagInfo.getAlbum();
+            row[PlaylistColumn.GENRE.ordinal()] = " " + tagInfo.getGenre();
+        } else {
             if (item.isFile()) {
-                switch (playlistColumn) {
-                    case TRACK:
-                        String trackStr = item.getTagInfo().getTrack();
-                        int trackNum = -1;
-                        if (!Utilities.isNullOrEmpty(trackStr)) {
-                            try {
-                                trackNum = Integer.parseInt(trackStr);
-                            } catch (NumberFormatException ex) {
+                loadTagInfo(item);
+                row[PlaylistColumn.TRACK.ordinal()] = "";
+                row[PlaylistColumn.DURATION.ordinal()] = item.getFormattedLength() + " ";
+            } else {
+                row[PlaylistColumn.TRACK.ordinal()] = " ";
+                row[PlaylistColumn.DURATION.ordinal()] = " ";
+            }
+            row[PlaylistColumn.TITLE.ordinal()] = " " + item.getFormattedName();
+            row[PlaylistColumn.ARTIST.ordinal()] = " ";
+            row[PlaylistColumn.ALBUM.ordinal()] = " ";
+            row[PlaylistColumn.GENRE.ordinal()] = " ";
+        }
+        return row;
+    }
+
+    /**
+     * Loads the tag info of an item in the background, then updates its row.
+     * Items whose tag info can't be read are not loaded again when their row
+     * is created again.
+     *
+     * @param item A playlist item.
+     */
+    private void loadTagInfo(final PlaylistItem item) {
+        if (Utilities.isNullOrEmpty(item.getLocation()) || failedItems.contains(item)
+                || !loadingItems.add(item)) {
+            return;
+        }
+        tagInfoExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    item.getTagInfo();
+                } catch (RuntimeException ex) {
+                    logger.error("Can't read tag info: " + item.getLocation(), ex);
+                } finally {
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            loadingItems.remove(item);
+                            if (!item.isTagInfoLoaded()) {
+                                failedItems.add(item);
+                            } else {
+                                int index = playlist.indexOf(item);
+                                if (index >= 0) {
+                                    fireTableRowsUpdated(index, index);
+                                } else {
+                                    rowCache.remove(item);
+                                }
                             }
                         }
-                        sb.append(trackNum < 0 ? "" : trackNum);
-                        break;
-                    case TITLE:
-                        sb.append(" ");
-                        String title = item.getTagInfo().getTitle();
-                        sb.append(Utilities.isNullOrEmpty(title) ? item.getFormattedName() : title);
-                        break;
-                    case DURATION:
-                        sb.append(item.getFormattedLength()).append(" ");
-                        break;
-                    case ARTIST:
-                        sb.append(" ").append(item.getTagInfo().getArtist());
-                        break;
-                    case ALBUM:
-                        sb.append(" ").append(item.getTagInfo().getAlbum());
-                        break;
-                    case GENRE:
-                        sb.append(" ").append(item.getTagInfo().getGenre());
-                        break;
-                }
-            } else {
-                switch (playlistColumn) {
-                    case TITLE:
-                        sb.append(" ");
-                        sb.append(item.getFormattedName());
-                        break;
-                    default:
-                        sb.append(" ");
-                        break;
+                    });
                 }
             }
-            return sb.toString();
-        }
-        return null;
+        });
     }
 }
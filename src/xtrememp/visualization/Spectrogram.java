@@ -19,8 +19,13 @@
 package xtrememp.visualization;
 
 import java.awt.Color;
+import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.nio.FloatBuffer;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.ImageObserver;
+import java.util.Arrays;
 import xtrememp.player.dsp.DigitalSignalSynchronizer;
 import xtrememp.player.dsp.DssContext;
 import xtrememp.visualization.spectrum.Band;
@@ -31,17 +36,18 @@ import xtrememp.visualization.spectrum.FlatBandGain;
 import xtrememp.visualization.spectrum.FrequencyBandGain;
 import xtrememp.visualization.spectrum.LinearBandDistribution;
 import xtrememp.visualization.spectrum.LogBandDistribution;
-
-import javax.sound.sampled.SourceDataLine;
+import xtrememp.visualization.spectrum.SpectrumListener;
 
 /**
- * Renders a spectrogram.
+ * Renders a spectrogram. Each frame writes one column of pixels straight into
+ * the image raster, colors coming from a precomputed table, and the image is
+ * used as a circular buffer of columns instead of being scrolled.
  *
  * Based on KJ-DSS project by Kristofer Fudalewski (http://sirk.sytes.net).
  *
  * @author Besmir Beqiri
  */
-public final class Spectrogram extends Visualization {
+public final class Spectrogram extends Visualization implements SpectrumListener {
 
     public static final String NAME = "Spectrogram";
     //
@@ -53,6 +59,7 @@ public final class Spectrogram extends Visualization {
     public static final BandDistribution DEFAULT_SPECTROGRAM_BAND_DISTRIBUTION = BAND_DISTRIBUTION_LINEAR;
     public static final BandGain DEFAULT_SPECTROGRAM_BAND_GAIN = BAND_GAIN_FREQUENCY;
     public static final float DEFAULT_SPECTRUM_ANALYSER_GAIN = 5.0F;
+    private static final int COLOR_TABLE_SIZE = 256;
     //
     private BandDistribution bandDistribution;
     private BandGain bandGain;
@@ -62,19 +69,19 @@ public final class Spectrogram extends Visualization {
     private int fftSampleSize;
     private float fftSampleRate;
     private FFT fft;
+    private float[] magnitudes;
     private float gain;
-    private float bandWidth;
-    private float[] brgb;
-    private float[] frgb;
+    private int[] colorTable;
+    private int[] bandColors;
+    private int[] rowBands;
+    private int[] pixels;
+    private volatile int column;
 
     public Spectrogram() {
         this.bandDistribution = DEFAULT_SPECTROGRAM_BAND_DISTRIBUTION;
         this.bandGain = DEFAULT_SPECTROGRAM_BAND_GAIN;
         this.gain = DEFAULT_SPECTRUM_ANALYSER_GAIN;
 
-        brgb = new float[3];
-        frgb = new float[3];
-
         setBandCount(DigitalSignalSynchronizer.DEFAULT_SAMPLE_SIZE / 2);
     }
 
@@ -99,14 +106,19 @@ public final class Spectrogram extends Visualization {
     }
 
     @Override
-    public void init(int sampleSize, SourceDataLine sourceDataLine) {
-        this.fftSampleSize = sampleSize;
-        this.fftSampleRate = sourceDataLine.getFormat().getFrameRate();
-        this.fft = new FFT(fftSampleSize);
+    public synchronized void spectrumInit(FFT fft, float sampleRate) {
+        this.fftSampleSize = fft.getInputSampleSize();
+        this.fftSampleRate = sampleRate;
+        this.fft = fft;
 
         computeBandTables();
     }
 
+    @Override
+    public void spectrumUpdate(float[] magnitudes) {
+        this.magnitudes = magnitudes;
+    }
+
     @Override
     public String getDisplayName() {
         return NAME;
@@ -124,16 +136,55 @@ public final class Spectrogram extends Visualization {
         freeImage();
     }
 
+    @Override
+    public synchronized void checkBuffImage(GraphicsConfiguration gc, int width, int height) {
+        if (buffImage == null || (buffImage.getWidth() != width || buffImage.getHeight() != height)) {
+            // Free image resources.
+            freeImage();
+
+            // Create an image whose pixels can be written directly.
+            buffImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) buffImage.getRaster().getDataBuffer()).getData();
+            Arrays.fill(pixels, backgroundColor.getRGB());
+            column = 0;
+        }
+    }
+
+    @Override
+    public synchronized void freeImage() {
+        super.freeImage();
+        pixels = null;
+        colorTable = null;
+    }
+
+    @Override
+    public void drawBuffImage(Graphics g, ImageObserver observer) {
+        BufferedImage image = buffImage;
+        if (image == null) {
+            return;
+        }
+        // The oldest column is the next one to be written.
+        int c = Math.min(column, image.getWidth());
+        int w = image.getWidth() - c;
+        int h = image.getHeight();
+        g.drawImage(image, 0, 0, w, h, c, 0, c + w, h, observer);
+        g.drawImage(image, w, 0, w + c, h, 0, 0, c, h, observer);
+    }
+
     @Override
     public synchronized void render(DssContext dssContext, Graphics2D g2d, int width, int height) {
-        // FFT processing.
-        FloatBuffer[] channelsBuffer = dssContext.getDataNormalized();
-        float[] _fft = fft.calculate(channelsMerge(channelsBuffer));
-        bandWidth = (float) height / (float) bands;
-
-        // Rendering.
-        float y = height;
-        int width2 = width - 1;
+        if (pixels == null || bdTable == null) {
+            return;
+        }
+        if (colorTable == null) {
+            computeColorTable();
+        }
+        if (rowBands == null || rowBands.length != height || bandColors.length != bands) {
+            computeRowBands(height);
+        }
+        // FFT magnitudes from the spectrum analyzer.
+        float[] _fft = magnitudes;
+
         int b, bd, i, li = 0, mi;
         float fs, m;
         // Group up available bands using band distribution table.
@@ -157,20 +208,43 @@ public final class Spectrogram extends Visualization {
             if (fs > 1.0F) {
                 fs = 1.0F;
             }
+            bandColors[bd] = colorTable[(int) (fs * (COLOR_TABLE_SIZE - 1))];
+        }
+
+        // Write the column, then move on to the next one.
+        int c = column;
+        for (int y = 0, p = c; y < height; y++, p += width) {
+            pixels[p] = bandColors[rowBands[y]];
+        }
+        column = (c + 1 < width) ? c + 1 : 0;
+    }
 
-            // Calculate spectrogram color shifting between foreground and background colors.
+    /**
+     * Calculates the spectrogram colors shifting between background and
+     * foreground colors.
+     */
+    private void computeColorTable() {
+        float[] brgb = backgroundColor.getColorComponents(null);
+        float[] frgb = getForegroundColor().getColorComponents(null);
+        colorTable = new int[COLOR_TABLE_SIZE];
+        for (int c = 0; c < COLOR_TABLE_SIZE; c++) {
+            float fs = (float) c / (float) (COLOR_TABLE_SIZE - 1);
             float _fs = 1.0F - fs;
-            backgroundColor.getColorComponents(brgb);
-            foregroundColor.getColorComponents(frgb);
-            Color color = new Color(frgb[0] * fs + brgb[0] * _fs,
+            colorTable[c] = new Color(frgb[0] * fs + brgb[0] * _fs,
                     frgb[1] * fs + brgb[1] * _fs,
-                    frgb[2] * fs + brgb[2] * _fs);
-            g2d.setColor(color);
-            g2d.drawLine(width2, Math.round(y), width2, Math.round(y - bandWidth));
-
-            y -= bandWidth;
+                    frgb[2] * fs + brgb[2] * _fs).getRGB();
         }
+    }
 
-        g2d.drawImage(buffImage, -1, 0, null);
+    /**
+     * Maps each row of pixels to its band, the lowest band at the bottom.
+     */
+    private void computeRowBands(int height) {
+        bandColors = new int[bands];
+        rowBands = new int[height];
+        for (int y = 0; y < height; y++) {
+            int bd = (int) (((float) (height - y) - 0.5F) * bands / height);
+            rowBands[y] = Math.min(Math.max(bd, 0), bands - 1);
+        }
     }
 }
@@ -25,7 +25,6 @@ import java.awt.LinearGradientPaint;
 import java.awt.MultipleGradientPaint.CycleMethod;
 import java.awt.Point;
 import java.awt.Toolkit;
-import java.nio.FloatBuffer;
 import java.text.DecimalFormat;
 import java.util.Map;
 import xtrememp.player.dsp.DssContext;
@@ -37,8 +36,7 @@ import xtrememp.visualization.spectrum.FlatBandGain;
 import xtrememp.visualization.spectrum.FrequencyBandGain;
 import xtrememp.visualization.spectrum.LinearBandDistribution;
 import xtrememp.visualization.spectrum.LogBandDistribution;
-
-import javax.sound.sampled.SourceDataLine;
+import xtrememp.visualization.spectrum.SpectrumListener;
 
 /**
  * Renders a spectrum analyzer.
@@ -47,7 +45,7 @@ import javax.sound.sampled.SourceDataLine;
  *
  * @author Besmir Beqiri
  */
-public final class SpectrumBars extends Visualization {
+public final class SpectrumBars extends Visualization implements SpectrumListener {
 
     public static final String NAME = "Spectrum Bars";
     //
@@ -71,6 +69,7 @@ public final class SpectrumBars extends Visualization {
     private int fftSampleSize;
     private float fftSampleRate;
     private FFT fft;
+    private float[] magnitudes;
     private float decay;
     private float gain;
     private int[] peaks;
@@ -135,15 +134,20 @@ public final class SpectrumBars extends Visualization {
     }
 
     @Override
-    public void init(int sampleSize, SourceDataLine sourceDataLine) {
-        this.fftSampleSize = sampleSize;
-        this.fftSampleRate = sourceDataLine.getFormat().getFrameRate();
-        this.fft = new FFT(fftSampleSize);
+    public synchronized void spectrumInit(FFT fft, float sampleRate) {
+        this.fftSampleSize = fft.getInputSampleSize();
+        this.fftSampleRate = sampleRate;
+        this.fft = fft;
         this.old_FFT = new float[bands];
 
         computeBandTables();
     }
 
+    @Override
+    public void spectrumUpdate(float[] magnitudes) {
+        this.magnitudes = magnitudes;
+    }
+
     @Override
     public String getDisplayName() {
         return NAME;
@@ -164,9 +168,8 @@ public final class SpectrumBars extends Visualization {
                 bm = 1;
             }
         }
-        //FFT processing.
-        FloatBuffer[] channelsBuffer = dssContext.getDataNormalized();
-        float[] _fft = fft.calculate(channelsMerge(channelsBuffer));
+        //FFT magnitudes from the spectrum analyzer.
+        float[] _fft = magnitudes;
         bandWidth = (float) width / (float) bands;
 
         g2d.setColor(backgroundColor);
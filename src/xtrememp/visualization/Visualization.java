@@ -19,10 +19,11 @@
 package xtrememp.visualization;
 
 import java.awt.Color;
+import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.image.BufferedImage;
-import java.nio.FloatBuffer;
+import java.awt.image.ImageObserver;
 import javax.sound.sampled.SourceDataLine;
 import xtrememp.player.dsp.DssContext;
 
@@ -86,25 +87,6 @@ public abstract class Visualization implements Comparable<Visualization> {
         this.foregroundColor = foregroundColor;
     }
 
-    /**
-     * Returns a {@link FloatBuffer} as the result of merging the channels
-     * buffers.
-     *
-     * @param channelsBuffer The channels buffer.
-     * @return A {@link FloatBuffer} object.
-     */
-    public FloatBuffer channelsMerge(FloatBuffer[] channelsBuffer) {
-        int ch = channelsBuffer.length;
-        for (int a = 0, cap = channelsBuffer[0].capacity(); a < cap; a++) {
-            float mcd = 0;
-            for (int b = 0; b < ch; b++) {
-                mcd += channelsBuffer[b].get(a);
-            }
-            channelsBuffer[0].put(a, mcd / (float) ch);
-        }
-        return channelsBuffer[0].asReadOnlyBuffer();
-    }
-
     public BufferedImage getBuffImage() {
         return buffImage;
     }
@@ -112,6 +94,16 @@ public abstract class Visualization implements Comparable<Visualization> {
     public Graphics2D getBuffGraphics() {
         return buffGraphics;
     }
+
+    /**
+     * Draws the rendered image.
+     *
+     * @param g a Graphics object used for painting.
+     * @param observer the image observer.
+     */
+    public void drawBuffImage(Graphics g, ImageObserver observer) {
+        g.drawImage(buffImage, 0, 0, observer);
+    }
     
     public void checkBuffImage(GraphicsConfiguration gc, int width, int height) {
         if (buffImage == null || (buffImage.getWidth() != width || buffImage.getHeight() != height)) {
@@ -28,6 +28,7 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
+import java.awt.Window;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
@@ -37,13 +38,18 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import xtrememp.Settings;
 import xtrememp.XtremeMP;
 import xtrememp.player.dsp.DigitalSignalProcessor;
 import xtrememp.player.dsp.DssContext;
+import xtrememp.player.dsp.FrameStatistics;
+import xtrememp.visualization.spectrum.SpectrumAnalyzer;
+import xtrememp.visualization.spectrum.SpectrumListener;
 
 import javax.sound.sampled.SourceDataLine;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import org.pushingpixels.substance.api.ComponentState;
 
 import org.pushingpixels.substance.api.SubstanceColorScheme;
@@ -63,6 +69,9 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
     private static Logger logger = LoggerFactory.getLogger(VisualizationPanel.class);
     protected final GraphicsConfiguration gc;
     protected final List<VisualizationChangeListener> listeners;
+    protected final SpectrumAnalyzer spectrumAnalyzer;
+    private final FrameStatistics frameStatistics = new FrameStatistics();
+    private final AtomicBoolean repaintPending = new AtomicBoolean();
     private Visualization currentVis;
     private TreeSet<Visualization> visSet;
     private Frame fullscreenWindow;
@@ -79,6 +88,7 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
         gc = GraphicsEnvironment.getLocalGraphicsEnvironment().
                 getDefaultScreenDevice().getDefaultConfiguration();
         listeners = new ArrayList<VisualizationChangeListener>();
+        spectrumAnalyzer = new SpectrumAnalyzer();
         initVisualizations();
         initFullScreenWindow();
         addMouseListener(new MouseAdapter() {
@@ -101,6 +111,11 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
         visSet.add(new SpectrumBars());
         visSet.add(new VolumeMeter());
         visSet.add(new Waveform());
+        for (Visualization vis : visSet) {
+            if (vis instanceof SpectrumListener) {
+                spectrumAnalyzer.addSpectrumListener((SpectrumListener) vis);
+            }
+        }
 
         String visDisplayName = Settings.getVisualization();
         for (Visualization vis : visSet) {
@@ -174,6 +189,16 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
         }
     }
 
+    /**
+     * Returns the statistics of the frames rendered by this panel. Frames
+     * skipped because the previous one is not painted yet count as dropped.
+     *
+     * @return A {@link FrameStatistics} object.
+     */
+    public FrameStatistics getFrameStatistics() {
+        return frameStatistics;
+    }
+
     public Set<Visualization> getVisualizationSet() {
         return visSet;
     }
@@ -237,6 +262,7 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
 
     @Override
     public void init(int sampleSize, SourceDataLine sourceDataLine) {
+        spectrumAnalyzer.init(sampleSize, sourceDataLine);
         for (Visualization vis : visSet) {
             vis.init(sampleSize, sourceDataLine);
         }
@@ -244,8 +270,23 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
 
     @Override
     public void process(DssContext dssContext) {
+        if (!isFullScreen) {
+            if (!isVisibleOnScreen()) {
+                return;
+            }
+            if (repaintPending.get()) {
+                // The event dispatch thread did not paint the last frame yet.
+                frameStatistics.frameDropped();
+                return;
+            }
+        }
+        long startTime = System.nanoTime();
         int width = getWidth();
         int height = getHeight();
+        // Only spectrum based visualizations need the FFT to be computed.
+        if (currentVis instanceof SpectrumListener) {
+            spectrumAnalyzer.process(dssContext);
+        }
         currentVis.checkBuffImage(gc, width, height);
         currentVis.render(dssContext, currentVis.getBuffGraphics(), width, height);
         if (isFullScreen) {
@@ -258,7 +299,7 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
                     if (!bufferStrategy.contentsLost()) {
                         if (currentVis != null) {
 //                            setSize(size);
-                            g2d.drawImage(currentVis.getBuffImage(), 0, 0, this);
+                            currentVis.drawBuffImage(g2d, this);
                         }
                     }
                     bufferStrategy.show();
@@ -268,9 +309,21 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
                     g2d.dispose();
                 }
             }
-        } else {
+        } else if (repaintPending.compareAndSet(false, true)) {
             EventQueue.invokeLater(this);
         }
+        frameStatistics.frameCompleted(startTime, System.nanoTime());
+    }
+
+    /**
+     * Checks if this panel is showing in a window which is not minimized.
+     */
+    private boolean isVisibleOnScreen() {
+        if (!isShowing() || getWidth() <= 0 || getHeight() <= 0) {
+            return false;
+        }
+        Window window = SwingUtilities.getWindowAncestor(this);
+        return !(window instanceof Frame) || (((Frame) window).getExtendedState() & Frame.ICONIFIED) == 0;
     }
 
     @Override
@@ -278,12 +331,16 @@ public class VisualizationPanel extends JPanel implements DigitalSignalProcessor
         int width = getWidth();
         int height = getHeight();
         currentVis.checkBuffImage(gc, width, height);
-        g.drawImage(currentVis.getBuffImage(), 0, 0, this);
+        currentVis.drawBuffImage(g, this);
     }
 
     @Override
     public void run() {
-        repaint();
+        try {
+            paintImmediately(0, 0, getWidth(), getHeight());
+        } finally {
+            repaintPending.set(false);
+        }
     }
 
     @Override
@@ -23,7 +23,6 @@ import java.awt.Graphics2D;
 import java.awt.LinearGradientPaint;
 import java.awt.MultipleGradientPaint.CycleMethod;
 import java.awt.Point;
-import java.nio.FloatBuffer;
 import xtrememp.player.dsp.DssContext;
 
 import javax.sound.sampled.SourceDataLine;
@@ -62,11 +61,11 @@ public final class VolumeMeter extends Visualization {
         float leftLevel = 0.0f;
         float rightLevel = 0.0f;
         int sampleSize = dssContext.getSampleSize();
-        FloatBuffer[] channelsBuffer = dssContext.getDataNormalized();
+        float[][] channelsData = dssContext.getChannelsData();
 
         for (int i = 0; i < sampleSize; i++) {
-            leftLevel += Math.abs(channelsBuffer[0].get(i));
-            rightLevel += Math.abs(channelsBuffer[1].get(i));
+            leftLevel += Math.abs(channelsData[0][i]);
+            rightLevel += Math.abs(channelsData[1][i]);
         }
 
         leftLevel = ((leftLevel * 2.0f) / (float) sampleSize);
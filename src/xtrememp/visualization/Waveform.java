@@ -20,7 +20,6 @@ package xtrememp.visualization;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.nio.FloatBuffer;
 import xtrememp.player.dsp.DssContext;
 
 import javax.sound.sampled.SourceDataLine;
@@ -57,13 +56,13 @@ public final class Waveform extends Visualization {
     @Override
     public synchronized void render(DssContext dssContext, Graphics2D g2d, int width, int height) {
         // Channels data.
-        FloatBuffer[] channelsBuffer = dssContext.getDataNormalized();
+        float[][] channelsData = dssContext.getChannelsData();
         int sampleSize = dssContext.getSampleSize();
         float leftLevel = 0.0f;
         float rightLevel = 0.0f;
         for (int i = 0; i < sampleSize; i++) {
-            leftLevel -= Math.abs(channelsBuffer[0].get(i));
-            rightLevel += Math.abs(channelsBuffer[1].get(i));
+            leftLevel -= Math.abs(channelsData[0][i]);
+            rightLevel += Math.abs(channelsData[1][i]);
         }
         // Rendering
         int width2 = width - 1;
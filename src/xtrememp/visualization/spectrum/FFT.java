@@ -24,6 +24,11 @@ import java.nio.FloatBuffer;
  * Fast Fourier Transformation class used for calculating the realtime spectrum
  * analyzer.
  * 
+ * The input being real, a sample of N values is transformed as a complex
+ * sample of N/2 values, even values as real parts and odd ones as imaginary
+ * parts, whose result is then split back into the N/2 bands of the spectrum.
+ * The sample can be weighted by a window function beforehand.
+ *
  * Based on KJ-DSS project by Kristofer Fudalewski (http://sirk.sytes.net).
  *
  * @author Besmir Beqiri
@@ -33,8 +38,12 @@ public class FFT {
     private float[] xre;
     private float[] xim;
     private float[] mag;
+    private float[] window;
+    private float windowSum;
     private float[] fftSin;
     private float[] fftCos;
+    private float[] splitSin;
+    private float[] splitCos;
     private int[] fftBr;
     private int ss, ss2, nu;
 
@@ -45,38 +54,49 @@ public class FFT {
      * the nearest power of 2.
      */
     public FFT(int sampleSize) {
-        nu = (int) Math.ceil(Math.log(sampleSize) / Math.log(2.0D));
+        this(sampleSize, WindowFunction.RECTANGULAR);
+    }
+
+    /**
+     * @param sampleSize The amount of the sample provided to the "calculate"
+     * method to use during FFT calculations, this is used to prepare the
+     * calculation tables in advance. This value is automatically rounded up to
+     * the nearest power of 2.
+     * @param windowFunction The window function applied to the sample.
+     */
+    public FFT(int sampleSize, WindowFunction windowFunction) {
+        nu = Math.max((int) Math.ceil(Math.log(sampleSize) / Math.log(2.0D)), 2);
 
         // -- Calculate the nearest sample size to a power of 2.
-        ss = (int) Math.pow(2.0D, nu);
+        ss = 1 << nu;
         ss2 = ss >> 1;
 
-        // -- Allocate calculation buffers.
-        xre = new float[ss];
-        xim = new float[ss];
+        // -- Allocate calculation buffers, the complex sample is half sized.
+        xre = new float[ss2];
+        xim = new float[ss2];
         mag = new float[ss2];
 
-        // -- Allocate FFT SIN/COS tables.
-        fftSin = new float[nu * ss2];
-        fftCos = new float[nu * ss2];
+        window = windowFunction.create(ss);
+        for (float w : window) {
+            windowSum += w;
+        }
 
         prepareTables();
     }
 
     /**
-     * Bit swapping method.
+     * Converts sound data over time into pressure values. (FFT)
+     *
+     * @param sample the sample to compute FFT values on.
+     * @return the results of the calculation, normalized between 0.0 and 1.0.
      */
-    private int bitrev(int j, int nu) {
-        int j1 = j;
-        int k = 0;
-
-        for (int i = 0; i < nu; i++) {
-            int j2 = j1 >> 1;
-            k = (k << 1) + j1 - (j2 << 1);
-            j1 = j2;
+    public float[] calculate(FloatBuffer sample) {
+        if (sample.hasArray()) {
+            return calculate(sample.array(), sample.arrayOffset(), sample.capacity());
         }
-
-        return k;
+        float[] data = new float[sample.capacity()];
+        sample.duplicate().get(data);
+        return calculate(data, 0, data.length);
     }
 
     /**
@@ -84,49 +104,23 @@ public class FFT {
      *
      * @param sample the sample to compute FFT values on.
      * @return the results of the calculation, normalized between 0.0 and 1.0.
+     *         The returned array is reused by the next calculation.
      */
-    public float[] calculate(FloatBuffer sample) {
-        int n2 = ss2;
-
-        // -- Fill buffer.
-        for (int a = 0, len = sample.capacity(); a < len; a++) {
-            xre[a] = sample.get(a);
-            xim[a] = 0.0f;
-        }
-
-        // -- Clear the remainder of the buffer.
-        for (int a = sample.capacity(); a < ss; a++) {
-            xre[a] = 0.0f;
-            xim[a] = 0.0f;
-        }
-
-        int x = 0;
-        for (int l = 0; l < nu; l++) {
-            for (int k = 0; k < ss; k += n2) {
-                for (int i = 0; i < n2; i++) {
-                    // -- Tabled sin/cos
-                    final float c = fftCos[x];
-                    final float s = fftSin[x];
-
-                    final int kn2 = k + n2;
-
-                    final float tr = xre[kn2] * c + xim[kn2] * s;
-                    final float ti = xim[kn2] * c - xre[kn2] * s;
+    public float[] calculate(float[] sample) {
+        return calculate(sample, 0, sample.length);
+    }
 
-                    xre[kn2] = xre[k] - tr;
-                    xim[kn2] = xim[k] - ti;
-                    xre[k] += tr;
-                    xim[k] += ti;
+    private float[] calculate(float[] sample, int offset, int length) {
+        int len = Math.min(length, ss);
 
-                    k++;
-                    x++;
-                }
-            }
-            n2 >>= 1;
+        // -- Fill buffer, clearing the remainder.
+        for (int a = 0, i = 0; a < ss2; a++, i += 2) {
+            xre[a] = (i < len) ? sample[offset + i] * window[i] : 0.0f;
+            xim[a] = (i + 1 < len) ? sample[offset + i + 1] * window[i + 1] : 0.0f;
         }
 
-        // -- Reorder output.
-        for (int k = 0; k < ss; k++) {
+        // -- Reorder input.
+        for (int k = 0; k < ss2; k++) {
             // -- Use tabled BR values.
             final int r = fftBr[k];
             if (r > k) {
@@ -140,9 +134,45 @@ public class FFT {
             }
         }
 
-        // -- Calculate magnitude.
-        for (int i = 0; i < ss2; i++) {
-            mag[i] = Math.abs(((float) (Math.sqrt((xre[i] * xre[i]) + (xim[i] * xim[i]))) / ss));
+        // -- Complex FFT of the half sized sample.
+        for (int n = 2, step = ss2 >> 1; n <= ss2; n <<= 1, step >>= 1) {
+            int n2 = n >> 1;
+            for (int k = 0; k < ss2; k += n) {
+                for (int i = 0, x = 0; i < n2; i++, x += step) {
+                    // -- Tabled sin/cos
+                    final float c = fftCos[x];
+                    final float s = fftSin[x];
+
+                    final int k1 = k + i;
+                    final int k2 = k1 + n2;
+
+                    final float tr = xre[k2] * c + xim[k2] * s;
+                    final float ti = xim[k2] * c - xre[k2] * s;
+
+                    xre[k2] = xre[k1] - tr;
+                    xim[k2] = xim[k1] - ti;
+                    xre[k1] += tr;
+                    xim[k1] += ti;
+                }
+            }
+        }
+
+        // -- Split into the spectrum of the real sample and calculate magnitude.
+        float scale = 0.5f / windowSum;
+        for (int k = 0; k < ss2; k++) {
+            final int m = (k == 0) ? 0 : ss2 - k;
+
+            final float er = xre[k] + xre[m];
+            final float ei = xim[k] - xim[m];
+            final float or = xim[k] + xim[m];
+            final float oi = xre[m] - xre[k];
+
+            final float c = splitCos[k];
+            final float s = splitSin[k];
+            final float re = er + or * c + oi * s;
+            final float im = ei + oi * c - or * s;
+
+            mag[k] = (float) Math.sqrt((re * re) + (im * im)) * scale;
         }
 
         return mag;
@@ -209,35 +239,31 @@ public class FFT {
      * Pre-calculates SIN/COS and bitrev tables in memory.
      */
     private void prepareTables() {
-        int n2 = ss2;
-        int nu1 = nu - 1;
-        int k = 0;
-        int x = 0;
-
-        // -- Prepare SIN/COS tables.
-        for (int l = 0; l < nu; l++) {
-            while (k < ss) {
-                for (int i = 0; i < n2; i++) {
-                    double p = bitrev(k >> nu1, nu);
-                    double arg = (Math.PI * p * 2.0D) / (double) ss;
-
-                    fftSin[x] = (float) Math.sin(arg);
-                    fftCos[x] = (float) Math.cos(arg);
-
-                    k++;
-                    x++;
-                }
-                k += n2;
-            }
-            k = 0;
-            nu1--;
-            n2 >>= 1;
+        int hss = ss2 >> 1;
+
+        // -- Prepare SIN/COS tables of the complex FFT.
+        fftSin = new float[hss];
+        fftCos = new float[hss];
+        for (int x = 0; x < hss; x++) {
+            double arg = (Math.PI * x * 2.0D) / (double) ss2;
+            fftSin[x] = (float) Math.sin(arg);
+            fftCos[x] = (float) Math.cos(arg);
+        }
+
+        // -- Prepare SIN/COS tables of the split.
+        splitSin = new float[ss2];
+        splitCos = new float[ss2];
+        for (int k = 0; k < ss2; k++) {
+            double arg = (Math.PI * k * 2.0D) / (double) ss;
+            splitSin[k] = (float) Math.sin(arg);
+            splitCos[k] = (float) Math.cos(arg);
         }
 
         // -- Prepare bitrev table.
-        fftBr = new int[ss];
-        for (k = 0; k < ss; k++) {
-            fftBr[k] = bitrev(k, nu);
+        int bits = nu - 1;
+        fftBr = new int[ss2];
+        for (int k = 0; k < ss2; k++) {
+            fftBr[k] = Integer.reverse(k) >>> (32 - bits);
         }
     }
 }
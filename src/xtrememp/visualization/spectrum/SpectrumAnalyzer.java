@@ -0,0 +1,106 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.visualization.spectrum;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sound.sampled.SourceDataLine;
+import xtrememp.player.dsp.DigitalSignalProcessor;
+import xtrememp.player.dsp.DssContext;
+
+/**
+ * Spectrum service shared by the visualizations. The channels of every sample
+ * sent by the digital signal synchronizer are merged and transformed once, and
+ * the resulting magnitudes are published to all registered listeners.
+ *
+ * @author Besmir Beqiri
+ */
+public class SpectrumAnalyzer implements DigitalSignalProcessor {
+
+    public static final WindowFunction DEFAULT_WINDOW_FUNCTION = WindowFunction.HANN;
+    private final List<SpectrumListener> listeners;
+    private final WindowFunction windowFunction;
+    private FFT fft;
+    private float sampleRate;
+    private float[] sample;
+
+    /**
+     * Creates a spectrum analyzer using the default window function.
+     */
+    public SpectrumAnalyzer() {
+        this(DEFAULT_WINDOW_FUNCTION);
+    }
+
+    /**
+     * @param windowFunction The window function applied to every sample.
+     */
+    public SpectrumAnalyzer(WindowFunction windowFunction) {
+        this.windowFunction = windowFunction;
+        this.listeners = new CopyOnWriteArrayList<SpectrumListener>();
+    }
+
+    public synchronized void addSpectrumListener(SpectrumListener listener) {
+        if (listener == null) {
+            return;
+        }
+        listeners.add(listener);
+        if (fft != null) {
+            listener.spectrumInit(fft, sampleRate);
+        }
+    }
+
+    public void removeSpectrumListener(SpectrumListener listener) {
+        if (listener == null) {
+            return;
+        }
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void init(int sampleSize, SourceDataLine sourceDataLine) {
+        fft = new FFT(sampleSize, windowFunction);
+        sampleRate = sourceDataLine.getFormat().getFrameRate();
+        sample = new float[sampleSize];
+        for (SpectrumListener listener : listeners) {
+            listener.spectrumInit(fft, sampleRate);
+        }
+    }
+
+    @Override
+    public synchronized void process(DssContext dssContext) {
+        if (fft == null || listeners.isEmpty()) {
+            return;
+        }
+        // Merge channels.
+        float[][] channelsData = dssContext.getChannelsData();
+        int ch = channelsData.length;
+        float[] first = channelsData[0];
+        for (int a = 0, len = Math.min(sample.length, first.length); a < len; a++) {
+            float mcd = first[a];
+            for (int b = 1; b < ch; b++) {
+                mcd += channelsData[b][a];
+            }
+            sample[a] = mcd / (float) ch;
+        }
+        float[] magnitudes = fft.calculate(sample);
+        for (SpectrumListener listener : listeners) {
+            listener.spectrumUpdate(magnitudes);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.visualization.spectrum;
+
+/**
+ * Classes must implement this interface in order to receive the spectrum
+ * computed by a {@link SpectrumAnalyzer}.
+ *
+ * @author Besmir Beqiri
+ */
+public interface SpectrumListener {
+
+    /**
+     * Called when the spectrum analyzer is prepared for a new source data
+     * line, or when the listener is added to a prepared analyzer.
+     *
+     * @param fft        The FFT instance used by the analyzer.
+     * @param sampleRate The sample rate of the data to process.
+     */
+    void spectrumInit(FFT fft, float sampleRate);
+
+    /**
+     * Called with the spectrum of every processed sample.
+     *
+     * @param magnitudes The magnitude of each band, normalized between 0.0
+     *                   and 1.0. The array is reused for the next sample.
+     */
+    void spectrumUpdate(float[] magnitudes);
+}
@@ -0,0 +1,65 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.visualization.spectrum;
+
+/**
+ * Window functions weighting the sample before FFT processing, to reduce the
+ * leakage of each frequency into its neighbour bands.
+ *
+ * @author Besmir Beqiri
+ */
+public enum WindowFunction {
+
+    /**
+     * No weighting.
+     */
+    RECTANGULAR,
+    /**
+     * Hann window, a good compromise between resolution and leakage.
+     */
+    HANN,
+    /**
+     * Blackman window, lower leakage for a wider main lobe.
+     */
+    BLACKMAN;
+
+    /**
+     * Creates a table of window coefficients.
+     *
+     * @param size The sample size.
+     * @return An array of size coefficients.
+     */
+    public float[] create(int size) {
+        float[] window = new float[size];
+        for (int i = 0; i < size; i++) {
+            double x = (Math.PI * 2.0D * i) / size;
+            switch (this) {
+                case HANN:
+                    window[i] = (float) (0.5D - 0.5D * Math.cos(x));
+                    break;
+                case BLACKMAN:
+                    window[i] = (float) (0.42D - 0.5D * Math.cos(x) + 0.08D * Math.cos(2.0D * x));
+                    break;
+                default:
+                    window[i] = 1.0F;
+            }
+        }
+        return window;
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.player.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Tests of the audio player, played on the null mixer.
+ *
+ * @author Besmir Beqiri
+ */
+public class AudioPlayerTest {
+
+    private static final File MEDIA = new File("bench/fixtures/synthetic.mp3");
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private AudioPlayer audioPlayer;
+    private CountingListener listener;
+
+    @Before
+    public void setUp() {
+        audioPlayer = new AudioPlayer();
+        audioPlayer.setMixerName(NullMixerProvider.MIXER_INFO.getName());
+        listener = new CountingListener();
+        audioPlayer.addPlaybackListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        audioPlayer.stop();
+    }
+
+    /**
+     * Skips tracks 1000 times. The events are delivered by one thread and
+     * the number of threads stays bounded.
+     */
+    @Test
+    public void skipTracksWithBoundedThreads() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        audioPlayer.open(MEDIA);
+        audioPlayer.play();
+        listener.awaitPlaying(1);
+        long startedThreads = threadMXBean.getTotalStartedThreadCount();
+        int threads = threadMXBean.getThreadCount();
+        threadMXBean.resetPeakThreadCount();
+
+        for (int i = 0; i < 1000; i++) {
+            audioPlayer.open(MEDIA);
+            audioPlayer.play();
+        }
+        listener.awaitPlaying(1001);
+
+        // The JVM may start a few threads of its own, e.g. compiler threads.
+        assertTrue("Threads started: " + (threadMXBean.getTotalStartedThreadCount() - startedThreads),
+                threadMXBean.getTotalStartedThreadCount() - startedThreads < 16);
+        assertTrue("Peak threads: " + threadMXBean.getPeakThreadCount() + ", before: " + threads,
+                threadMXBean.getPeakThreadCount() - threads < 16);
+        assertEquals(1, listener.threads.size());
+        assertEquals(1001, listener.opened.get());
+    }
+
+    /**
+     * Plays 16 bits PCM and checks that the steady state of the playback
+     * allocates next to nothing, from the allocated bytes counters of the
+     * threads.
+     */
+    @Test
+    public void steadyStatePlaybackDoesNotAllocate() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        // 30 seconds, played in 3 seconds on the null mixer.
+        File file = newSine(30, 44100, 2);
+        audioPlayer.open(file);
+        audioPlayer.play();
+        listener.awaitPlaying(1);
+        Thread.sleep(1000);
+        Map<Long, Long> before = allocatedBytes(threadMXBean);
+        Thread.sleep(1000);
+        Map<Long, Long> after = allocatedBytes(threadMXBean);
+        assertEquals(AudioPlayer.PLAY, audioPlayer.getState());
+
+        long allocated = 0;
+        for (Map.Entry<Long, Long> entry : after.entrySet()) {
+            Long start = before.get(entry.getKey());
+            if (start != null && entry.getKey().longValue() != Thread.currentThread().getId()) {
+                allocated += entry.getValue().longValue() - start.longValue();
+            }
+        }
+        // About 1.7 MB of audio data were played meanwhile.
+        assertTrue("Allocated bytes: " + allocated, allocated < 16 * 1024);
+    }
+
+    /**
+     * Pauses while the tail of the media is buffered, after the end of the
+     * stream was decoded. The buffered audio is kept, and the end of media
+     * is only reached once it has been played after resuming.
+     */
+    @Test
+    public void pauseAtEndOfStreamKeepsBufferedAudio() throws Exception {
+        // 64 KB, played in 0.4 seconds on the null mixer.
+        File file = newSine(4, 8000, 1);
+        audioPlayer.setRingBufferSize(128 * 1024);
+        audioPlayer.open(file);
+        audioPlayer.play();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!audioPlayer.endOfStream) {
+            assertTrue("End of stream not decoded", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        audioPlayer.pause();
+        Thread.sleep(100);
+        int buffered = audioPlayer.ringBuffer.available();
+        assertTrue("Buffered bytes: " + buffered, buffered > 0);
+        Thread.sleep(400);
+        assertEquals(0, listener.endOfMedia.get());
+        assertEquals(AudioPlayer.PAUSE, audioPlayer.getState());
+        assertEquals(buffered, audioPlayer.ringBuffer.available());
+
+        audioPlayer.play();
+        listener.awaitEndOfMedia();
+        assertEquals(0, audioPlayer.ringBuffer.available());
+    }
+
+    private File newSine(int seconds, int sampleRate, int channels) throws Exception {
+        File file = temporaryFolder.newFile("sine" + sampleRate + ".wav");
+        AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+        byte[] pcm = new byte[seconds * sampleRate * format.getFrameSize()];
+        for (int i = 0, pos = 0; pos < pcm.length; i++) {
+            int sample = (int) (Math.sin(2 * Math.PI * 440 * i / (double) sampleRate) * 16384);
+            for (int ch = 0; ch < channels; ch++) {
+                pcm[pos++] = (byte) sample;
+                pcm[pos++] = (byte) (sample >> 8);
+            }
+        }
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format,
+                pcm.length / format.getFrameSize()), AudioFileFormat.Type.WAVE, file);
+        return file;
+    }
+
+    private static Map<Long, Long> allocatedBytes(com.sun.management.ThreadMXBean threadMXBean) {
+        Map<Long, Long> allocated = new HashMap<Long, Long>();
+        for (long id : threadMXBean.getAllThreadIds()) {
+            long bytes = threadMXBean.getThreadAllocatedBytes(id);
+            if (bytes >= 0) {
+                allocated.put(Long.valueOf(id), Long.valueOf(bytes));
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Counts the events and records the threads delivering them.
+     */
+    private static class CountingListener implements PlaybackListener {
+
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger playing = new AtomicInteger();
+        final AtomicInteger endOfMedia = new AtomicInteger();
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+        /**
+         * Waits for the delivery of the given number of playing events.
+         */
+        void awaitPlaying(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (playing.get() < count) {
+                assertTrue("Playing events: " + playing.get(), System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+
+        /**
+         * Waits for the delivery of an end of media event.
+         */
+        void awaitEndOfMedia() throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            while (endOfMedia.get() == 0) {
+                assertTrue("No end of media event", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+
+        private void record() {
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void playbackBuffering(PlaybackEvent pe) {
+            record();
+        }
+
+        @Override
+        public void playbackOpened(PlaybackEvent pe) {
+            record();
+            opened.incrementAndGet();
+        }
+
+        @Override
+        public void playbackEndOfMedia(PlaybackEvent pe) {
+            record();
+            endOfMedia.incrementAndGet();
+        }
+
+        @Override
+        public void playbackNextMedia(PlaybackEvent pe) {
+            record();
+        }
+
+        @Override
+        public void playbackPlaying(PlaybackEvent pe) {
+            record();
+            playing.incrementAndGet();
+        }
+
+        @Override
+        public void playbackProgress(PlaybackEvent pe) {
+            record();
+        }
+
+        @Override
+        public void playbackPaused(PlaybackEvent pe) {
+            record();
+        }
+
+        @Override
+        public void playbackStopped(PlaybackEvent pe) {
+            record();
+        }
+    }
+}
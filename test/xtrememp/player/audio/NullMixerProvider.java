@@ -0,0 +1,325 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.player.audio;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Control;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.LineListener;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.spi.MixerProvider;
+
+/**
+ * Provides a mixer whose source data lines discard the data written, so
+ * that the player can be tested without an audio device. The lines consume
+ * their buffer {@link #SPEED} times faster than real time, and a write
+ * blocks while the buffer is full, as with a real device.
+ *
+ * @author Besmir Beqiri
+ */
+public class NullMixerProvider extends MixerProvider {
+
+    public static final Mixer.Info MIXER_INFO = new NullMixerInfo();
+    public static final int SPEED = 10;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    @Override
+    public Mixer.Info[] getMixerInfo() {
+        return new Mixer.Info[]{MIXER_INFO};
+    }
+
+    @Override
+    public Mixer getMixer(Mixer.Info info) {
+        if (!MIXER_INFO.equals(info)) {
+            throw new IllegalArgumentException(String.valueOf(info));
+        }
+        return (Mixer) newProxy(Mixer.class, new MixerHandler());
+    }
+
+    private static Object newProxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * Returns false, 0 or null for the mixer methods not handled.
+     */
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == Boolean.TYPE) {
+            return Boolean.FALSE;
+        } else if (type == Integer.TYPE) {
+            return Integer.valueOf(0);
+        } else if (type == Long.TYPE) {
+            return Long.valueOf(0);
+        } else if (type == Float.TYPE) {
+            return Float.valueOf(0);
+        }
+        return null;
+    }
+
+    private static class NullMixerInfo extends Mixer.Info {
+
+        NullMixerInfo() {
+            super("Null Mixer", "XtremeMP", "Discards the audio data", "1.0");
+        }
+    }
+
+    private static class MixerHandler implements InvocationHandler {
+
+        private final Line.Info lineInfo = new DataLine.Info(SourceDataLine.class,
+                new AudioFormat[0], AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED);
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getMixerInfo")) {
+                return MIXER_INFO;
+            } else if (name.equals("getSourceLineInfo") && (args == null || args.length == 0)) {
+                return new Line.Info[]{lineInfo};
+            } else if (name.equals("isLineSupported")) {
+                return Boolean.valueOf(SourceDataLine.class.isAssignableFrom(((Line.Info) args[0]).getLineClass()));
+            } else if (name.equals("getLine")) {
+                return new NullSourceDataLine((Line.Info) args[0]);
+            } else if (name.equals("getSourceLines") || name.equals("getTargetLines")) {
+                return new Line[0];
+            } else if (name.equals("getMaxLines")) {
+                return Integer.valueOf(AudioSystem.NOT_SPECIFIED);
+            } else if (name.equals("getControls")) {
+                return new Control[0];
+            } else if (name.equals("hashCode")) {
+                return Integer.valueOf(System.identityHashCode(proxy));
+            } else if (name.equals("equals")) {
+                return Boolean.valueOf(proxy == args[0]);
+            } else if (name.equals("toString")) {
+                return MIXER_INFO.getName();
+            }
+            return defaultValue(method);
+        }
+    }
+
+    /**
+     * A line without the reflection of a proxy, which would allocate on
+     * every write.
+     */
+    private static class NullSourceDataLine implements SourceDataLine {
+
+        private final Line.Info lineInfo;
+        private AudioFormat format;
+        private int bufferSize = BUFFER_SIZE;
+        private long framesWritten;
+        private long framesConsumed;
+        private long lastUpdate;
+        private long flushes;
+        private boolean open;
+        private boolean running;
+
+        NullSourceDataLine(Line.Info lineInfo) {
+            this.lineInfo = lineInfo;
+            // The format requested, until the line is opened.
+            if (lineInfo instanceof DataLine.Info
+                    && ((DataLine.Info) lineInfo).getFormats().length > 0) {
+                format = ((DataLine.Info) lineInfo).getFormats()[0];
+            }
+        }
+
+        /**
+         * Consumes the frames played since the last update.
+         */
+        private void update() {
+            long now = System.nanoTime();
+            if (running && format != null) {
+                long frames = (long) ((now - lastUpdate) * (double) format.getFrameRate() * SPEED / 1e9);
+                framesConsumed = Math.min(framesWritten, framesConsumed + frames);
+            }
+            lastUpdate = now;
+        }
+
+        @Override
+        public synchronized void open(AudioFormat format, int bufferSize) {
+            this.format = format;
+            if (bufferSize > 0) {
+                this.bufferSize = bufferSize;
+            }
+            open = true;
+        }
+
+        @Override
+        public void open(AudioFormat format) {
+            open(format, AudioSystem.NOT_SPECIFIED);
+        }
+
+        @Override
+        public void open() {
+            open(format, AudioSystem.NOT_SPECIFIED);
+        }
+
+        @Override
+        public synchronized int write(byte[] b, int off, int len) {
+            int frameSize = format.getFrameSize();
+            int bufferFrames = bufferSize / frameSize;
+            long flushCount = flushes;
+            int written = 0;
+            while (written < len && open && flushCount == flushes) {
+                update();
+                long free = bufferFrames - (framesWritten - framesConsumed);
+                if (free > 0) {
+                    int n = (int) Math.min(len - written, free * frameSize);
+                    framesWritten += n / frameSize;
+                    written += n;
+                } else {
+                    try {
+                        wait(1);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            return written;
+        }
+
+        @Override
+        public synchronized void drain() {
+            update();
+            while (framesConsumed < framesWritten && open && running) {
+                try {
+                    wait(1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                update();
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            update();
+            framesWritten = framesConsumed;
+            flushes++;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void start() {
+            update();
+            running = true;
+        }
+
+        @Override
+        public synchronized void stop() {
+            update();
+            running = false;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void close() {
+            open = false;
+            running = false;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public synchronized boolean isActive() {
+            return running;
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public synchronized AudioFormat getFormat() {
+            return format;
+        }
+
+        @Override
+        public synchronized int getBufferSize() {
+            return bufferSize;
+        }
+
+        @Override
+        public synchronized int available() {
+            update();
+            return bufferSize - (int) (framesWritten - framesConsumed) * format.getFrameSize();
+        }
+
+        @Override
+        public synchronized int getFramePosition() {
+            return (int) getLongFramePosition();
+        }
+
+        @Override
+        public synchronized long getLongFramePosition() {
+            update();
+            return framesConsumed;
+        }
+
+        @Override
+        public synchronized long getMicrosecondPosition() {
+            return (long) (getLongFramePosition() * 1000000.0 / format.getFrameRate());
+        }
+
+        @Override
+        public float getLevel() {
+            return AudioSystem.NOT_SPECIFIED;
+        }
+
+        @Override
+        public Line.Info getLineInfo() {
+            return lineInfo;
+        }
+
+        @Override
+        public Control[] getControls() {
+            return new Control[0];
+        }
+
+        @Override
+        public boolean isControlSupported(Control.Type control) {
+            return false;
+        }
+
+        @Override
+        public Control getControl(Control.Type control) {
+            throw new IllegalArgumentException(String.valueOf(control));
+        }
+
+        @Override
+        public void addLineListener(LineListener listener) {
+        }
+
+        @Override
+        public void removeLineListener(LineListener listener) {
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.tag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Heap footprint of the tag info of a large playlist, with and without
+ * pooling the tag values.
+ *
+ * @author Besmir Beqiri
+ */
+public class StringPoolTest {
+
+    private static final int ITEM_COUNT = 100000;
+
+    @Test
+    public void internReturnsPooledInstance() {
+        String value = new String("Artist");
+        assertSame(StringPool.intern(value), StringPool.intern(new String("Artist")));
+        assertNull(StringPool.intern(null));
+    }
+
+    /**
+     * Restores the tag info of a synthetic 100k tracks library from the tag
+     * cache format, which makes a new string of every value, and compares
+     * the heap it takes with and without pooling.
+     */
+    @Test
+    public void tagValuesFootprint() throws Exception {
+        byte[] records = createRecords();
+
+        long before = HeapUsage.usedHeap();
+        MpegInfo[] plain = readRecords(records, false);
+        long plainSize = HeapUsage.usedHeap() - before;
+        assertEquals(ITEM_COUNT, plain.length);
+        plain = null;
+
+        before = HeapUsage.usedHeap();
+        MpegInfo[] pooled = readRecords(records, true);
+        long pooledSize = HeapUsage.usedHeap() - before;
+        assertEquals(ITEM_COUNT, pooled.length);
+
+        System.out.println("Tag info of " + ITEM_COUNT + " items: " + plainSize / 1024 + " KB, pooled: "
+                + pooledSize / 1024 + " KB, " + plainSize / ITEM_COUNT + " / " + pooledSize / ITEM_COUNT
+                + " bytes per item");
+        assertTrue(pooledSize < plainSize * 3 / 4);
+    }
+
+    /**
+     * Writes the records of a library of 500 artists with 4 albums each,
+     * 10 tracks per album and 20 genres.
+     */
+    private static byte[] createRecords() throws IOException {
+        Random random = new Random(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        MpegInfo tagInfo = new MpegInfo();
+        tagInfo.encodingType = "MPEG1L3";
+        tagInfo.format = "MP3";
+        tagInfo.channels = "Joint Stereo";
+        tagInfo.sampleRate = "44100 Hz";
+        tagInfo.encoder = "LAME3.99";
+        tagInfo.version = "MPEG-1";
+        tagInfo.layer = "Layer III";
+        tagInfo.emphasis = "none";
+        tagInfo.channelsAsNumber = 2;
+        tagInfo.sampleRateAsNumber = 44100;
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            int album = i / 10;
+            int artist = album / 4;
+            tagInfo.location = "/home/user/Music/Artist " + artist + "/Album " + album + "/" + (i % 10 + 1)
+                    + " - Title " + i + ".mp3";
+            tagInfo.bitRate = (128 + 32 * random.nextInt(6)) + " kbps";
+            tagInfo.bitRateAsNumber = Integer.parseInt(tagInfo.bitRate.substring(0, 3)) * 1000L;
+            tagInfo.track = String.valueOf(i % 10 + 1);
+            tagInfo.year = String.valueOf(1970 + artist % 40);
+            tagInfo.genre = "Genre " + artist % 20;
+            tagInfo.title = "Title " + i;
+            tagInfo.artist = "Artist " + artist;
+            tagInfo.album = "Album " + album;
+            tagInfo.comment = "";
+            tagInfo.duration = 120 + random.nextInt(300);
+            tagInfo.size = tagInfo.duration * 16000;
+            tagInfo.writeFields(out);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static MpegInfo[] readRecords(byte[] records, boolean pooled) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(records));
+        MpegInfo[] tagInfos = new MpegInfo[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            tagInfos[i] = new MpegInfo();
+            tagInfos[i].readFields(in);
+            if (pooled) {
+                tagInfos[i].internFields();
+            }
+        }
+        return tagInfos;
+    }
+}
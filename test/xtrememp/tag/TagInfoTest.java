@@ -0,0 +1,145 @@
+/**
+ * Xtreme Media Player a cross-platform media player.
+ * Copyright (C) 2005-2011 Besmir Beqiri
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package xtrememp.tag;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.images.Artwork;
+import org.jaudiotagger.tag.images.ArtworkFactory;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import xtrememp.Settings;
+import xtrememp.playlist.PlaylistItem;
+import static org.junit.Assert.*;
+
+/**
+ * Heap footprint of the tag info of large playlists.
+ *
+ * @author Besmir Beqiri
+ */
+public class TagInfoTest {
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private static final int ITEM_COUNT = 10000;
+    private static final int ARTWORK_SIZE = 16 * 1024;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        // Keep the tag cache out of the user home.
+        Settings.setCacheDir(temporaryFolder.getRoot());
+    }
+
+    /**
+     * Loads the tag info of a synthetic playlist of 10k tracks, each one
+     * with a 16 KB cover, and checks that the covers are not kept.
+     */
+    @Test
+    public void tagInfoFootprint() throws Exception {
+        byte[] media = createTaggedMedia();
+        File directory = temporaryFolder.newFolder("media");
+        List<PlaylistItem> items = new ArrayList<PlaylistItem>(ITEM_COUNT);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            File file = new File(directory, "track" + i + ".mp3");
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(media);
+            } finally {
+                out.close();
+            }
+            items.add(new PlaylistItem(file.getName(), file.getAbsolutePath(), -1, true));
+        }
+
+        long before = HeapUsage.usedHeap();
+        for (PlaylistItem item : items) {
+            assertNotNull(item.getTagInfo());
+        }
+        long perItem = (HeapUsage.usedHeap() - before) / ITEM_COUNT;
+        System.out.println("Tag info footprint: " + perItem + " bytes per item");
+        assertTrue("Bytes per item: " + perItem, perItem < ARTWORK_SIZE / 4);
+
+        // The covers are still there on demand, within the cache bound.
+        ArtworkCache artworkCache = ArtworkCache.getInstance();
+        artworkCache.setMaxSize(10 * ARTWORK_SIZE);
+        for (int i = 0; i < 100; i++) {
+            TagInfo tagInfo = items.get(i).getTagInfo();
+            assertEquals("Title", tagInfo.getTitle());
+            Artwork artwork = tagInfo.getArtwork();
+            assertNotNull(artwork);
+            assertEquals(ARTWORK_SIZE, artwork.getBinaryData().length);
+        }
+        assertTrue(artworkCache.getSize() <= 10 * ARTWORK_SIZE);
+        artworkCache.clear();
+    }
+
+    /**
+     * Returns a short MP3 with a title and a cover, from the start of the
+     * benchmark fixture.
+     */
+    private static byte[] createTaggedMedia() throws Exception {
+        File file = temporaryFolder.newFile("tagged.mp3");
+        byte[] head = new byte[8 * 1024];
+        RandomAccessFile in = new RandomAccessFile("bench/fixtures/synthetic.mp3", "r");
+        try {
+            in.readFully(head);
+        } finally {
+            in.close();
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(head);
+        } finally {
+            out.close();
+        }
+
+        AudioFile audioFile = AudioFileIO.read(file);
+        Tag tag = audioFile.getTagOrCreateAndSetDefault();
+        tag.setField(FieldKey.TITLE, "Title");
+        tag.setField(FieldKey.ARTIST, "Artist");
+        tag.setField(FieldKey.ALBUM, "Album");
+        byte[] image = new byte[ARTWORK_SIZE];
+        new Random(0).nextBytes(image);
+        Artwork artwork = ArtworkFactory.getNew();
+        artwork.setBinaryData(image);
+        artwork.setMimeType("image/jpeg");
+        artwork.setPictureType(3);
+        tag.setField(artwork);
+        audioFile.commit();
+
+        byte[] media = new byte[(int) file.length()];
+        in = new RandomAccessFile(file, "r");
+        try {
+            in.readFully(media);
+        } finally {
+            in.close();
+        }
+        return media;
+    }
+}
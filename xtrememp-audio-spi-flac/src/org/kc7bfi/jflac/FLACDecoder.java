@@ -514,13 +514,31 @@ public class FLACDecoder {
         return null;
     }
     
+    /**
+     * Skip bytes of the input stream and resynchronize on the next frame.
+     * The frame found after the new position is read and returned, and the
+     * number of samples decoded is updated from its header.
+     * @param bytes The number of bytes to skip from the current position
+     * @return  The next frame, or null on end-of-file
+     * @throws IOException  on read error
+     */
+    public Frame skipToFrame(long bytes) throws IOException {
+        bitStream.skip(bytes);
+        samplesDecoded = 0;
+        Frame nextFrame = readNextFrame();
+        if (nextFrame != null) {
+            samplesDecoded = nextFrame.header.sampleNumber + nextFrame.header.blockSize;
+        }
+        return nextFrame;
+    }
+    
     /**
      * Bytes consumed.
      * @return  The number of bytes read
      */
-    //public long getBytesConsumed() {
-    //    return is.getConsumedBlurbs();
-    //}
+    public long getBytesConsumed() {
+        return bitStream.getTotalBytesConsumed();
+    }
     
     /**
      * Bytes read.
@@ -55,7 +55,7 @@ public class BitInputStream {
     private int getByte = 0;
     private int getBit = 0;
     private int availBits = 0;
-    private int totalBitsRead = 0;
+    private long totalBitsRead = 0;
     
     private short readCRC16 = 0;
     
@@ -731,6 +731,46 @@ public class BitInputStream {
      * @return Returns the total blurbs read.
      */
     public int getTotalBytesRead() {
+        return (int) ((totalBitsRead + 7) / 8);
+    }
+    
+    /**
+     * Total bytes consumed, without the int range limitation.
+     * @return Returns the total bytes consumed.
+     */
+    public long getTotalBytesConsumed() {
         return ((totalBitsRead + 7) / 8);
     }
+    
+    /**
+     * Skip bytes, starting from the next byte boundary. Buffered data is
+     * consumed first, then the remaining bytes are skipped in the underlying
+     * input stream without being read.
+     * @param bytes The number of bytes to skip
+     * @return The number of bytes skipped
+     * @throws IOException  Thrown if error reading input stream
+     */
+    public long skip(long bytes) throws IOException {
+        if (!isConsumedByteAligned()) {
+            readRawUInt(bitsLeftForByteAlignment());
+        }
+        int unconsumed = putByte - getByte;
+        if (bytes <= unconsumed) {
+            readByteBlockAlignedNoCRC(null, (int) bytes);
+            return bytes;
+        }
+        long skipped = unconsumed;
+        totalBitsRead += (unconsumed << BITS_PER_BLURB_LOG2);
+        reset();
+        while (skipped < bytes) {
+            long n = inStream.skip(bytes - skipped);
+            if (n <= 0) {
+                if (inStream.read() == -1) break;
+                n = 1;
+            }
+            skipped += n;
+            totalBitsRead += (n << BITS_PER_BLURB_LOG2);
+        }
+        return skipped;
+    }
 }
@@ -23,14 +23,18 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
 
 import org.kc7bfi.jflac.PCMProcessor;
 import org.kc7bfi.jflac.FLACDecoder;
 import org.kc7bfi.jflac.PropertiesContainer;
 import org.kc7bfi.jflac.frame.Frame;
 import org.kc7bfi.jflac.metadata.Metadata;
+import org.kc7bfi.jflac.metadata.SeekPoint;
+import org.kc7bfi.jflac.metadata.SeekTable;
 import org.kc7bfi.jflac.metadata.StreamInfo;
 import org.kc7bfi.jflac.util.ByteData;
+import org.tritonus.share.sampled.TAudioFormat;
 import org.tritonus.share.sampled.convert.TAsynchronousFilteredAudioInputStream;
 
 /**
@@ -52,6 +56,14 @@ public class Flac2PcmAudioInputStream extends TAsynchronousFilteredAudioInputStr
     private StreamInfo streamInfo;
     /** the meta data from the stream */
     private Metadata[] metaData;
+    /** The seek table, if any. */
+    private SeekTable seekTable;
+    /** Length in bytes of the encoded stream, -1 if unknown. */
+    private long streamLength = -1;
+    /** Offset in bytes of the first frame. */
+    private long firstFrameOffset = 0;
+    /** Below this estimated distance in bytes, frames are walked linearly. */
+    private static final long LINEAR_SEEK_BYTES = 64 * 1024;
 
     /**
      * Constructor.
@@ -64,6 +76,15 @@ public class Flac2PcmAudioInputStream extends TAsynchronousFilteredAudioInputStr
         super(format, -1);
 
         this.in = in;
+        if (in instanceof AudioInputStream) {
+            AudioFormat sourceFormat = ((AudioInputStream) in).getFormat();
+            if (sourceFormat instanceof TAudioFormat) {
+                Object length = ((TAudioFormat) sourceFormat).properties().get("flac.length.bytes");
+                if (length instanceof Long) {
+                    streamLength = ((Long) length).longValue();
+                }
+            }
+        }
     }
 
     /**
@@ -75,6 +96,12 @@ public class Flac2PcmAudioInputStream extends TAsynchronousFilteredAudioInputStr
         decoder = new FLACDecoder(in);
         decoder.addPCMProcessor(this);
         metaData = decoder.readMetadata();
+        for (int i = 0; i < metaData.length; i++) {
+            if (metaData[i] instanceof SeekTable) {
+                seekTable = (SeekTable) metaData[i];
+            }
+        }
+        firstFrameOffset = decoder.getBytesConsumed();
     }
 
     /**
@@ -112,6 +139,18 @@ public class Flac2PcmAudioInputStream extends TAsynchronousFilteredAudioInputStr
         return metaData;
     }
 
+    /**
+     * Skip to the given position in bytes of the encoded stream.
+     * The position is converted to a sample number, the nearest seek point
+     * before it is used as a starting point, then the remaining distance is
+     * halved on frame sync codes until it is small enough to walk frames.
+     * The frame containing the target sample is decoded and its leading
+     * samples dropped, so the seek is sample accurate.
+     *
+     * @param bytes position in bytes of the encoded stream
+     * @return the number of encoded bytes skipped, or -1 at end of stream
+     * @throws IOException
+     */
     @Override
     public long skip(long bytes) throws IOException {
         if (decoder == null) {
@@ -119,20 +158,100 @@ public class Flac2PcmAudioInputStream extends TAsynchronousFilteredAudioInputStr
         }
         if (decoder.isEOF()) {
             getCircularBuffer().close();
-        } else {
-//            long sync = bytes % streamInfo.getMaxBlockSize();
-//            long bytesRead = super.skip(bytes - sync + 982);
-            long bytesRead = 0L;
-            bytes -= decoder.getTotalBytesRead();
-            while (bytesRead < bytes) {
-                Frame frame = decoder.readNextFrame();
-                if (frame != null) {
-                    bytesRead = decoder.getTotalBytesRead();
+            return -1;
+        }
+        long startOffset = decoder.getBytesConsumed();
+        long totalSamples = (streamInfo != null) ? streamInfo.getTotalSamples() : 0;
+        if (streamLength <= 0 || totalSamples <= 0) {
+            // Unknown length, walk frames up to the given encoded position.
+            Frame frame = null;
+            do {
+                frame = decoder.readNextFrame();
+            } while (frame != null && decoder.getBytesConsumed() < bytes);
+            if (frame == null) {
+                getCircularBuffer().close();
+            }
+            return decoder.getBytesConsumed() - startOffset;
+        }
+        long targetSample = (long) ((double) bytes / streamLength * totalSamples);
+        if (targetSample >= totalSamples) {
+            targetSample = totalSamples - 1;
+        }
+        seekSample(targetSample, totalSamples);
+        return decoder.getBytesConsumed() - startOffset;
+    }
+
+    /**
+     * Position the decoder on the given sample and write the PCM data from
+     * that sample to the end of its frame.
+     *
+     * @param targetSample the sample to seek to
+     * @param totalSamples the total number of samples in the stream
+     * @throws IOException
+     */
+    private void seekSample(long targetSample, long totalSamples) throws IOException {
+        long loSample = decoder.getSamplesDecoded();
+        long loOffset = decoder.getBytesConsumed();
+        long hiSample = totalSamples;
+        long hiOffset = streamLength;
+        // Bracket the target between the nearest seek points.
+        if (seekTable != null) {
+            for (int i = 0; i < seekTable.numberOfPoints(); i++) {
+                SeekPoint point = seekTable.getSeekPoint(i);
+                long sample = point.getSampleNumber();
+                if (sample == 0xffffffffffffffffL) {
+                    // Placeholder point.
+                    continue;
                 }
+                long offset = firstFrameOffset + point.getStreamOffset();
+                if (sample <= targetSample) {
+                    if (offset > loOffset) {
+                        loSample = sample;
+                        loOffset = offset;
+                    }
+                } else if (offset < hiOffset) {
+                    hiSample = sample;
+                    hiOffset = offset;
+                }
+            }
+        }
+        Frame frame = null;
+        long position = decoder.getBytesConsumed();
+        if (loOffset > position) {
+            frame = decoder.skipToFrame(loOffset - position);
+        }
+        // Halve the estimated distance until close enough, forward only.
+        while (frame == null || frame.header.sampleNumber + frame.header.blockSize <= targetSample) {
+            if (frame != null) {
+                loSample = frame.header.sampleNumber + frame.header.blockSize;
+                loOffset = decoder.getBytesConsumed();
             }
-            return bytesRead;
+            long distance = 0;
+            if (hiSample > loSample) {
+                distance = (long) ((double) (targetSample - loSample) / (hiSample - loSample) * (hiOffset - loOffset));
+            }
+            if (distance < LINEAR_SEEK_BYTES) {
+                break;
+            }
+            frame = decoder.skipToFrame(distance / 2);
+            if (frame == null) {
+                break;
+            }
+        }
+        // Walk the last frames.
+        while (frame == null || frame.header.sampleNumber + frame.header.blockSize <= targetSample) {
+            frame = decoder.readNextFrame();
+            if (frame == null) {
+                getCircularBuffer().close();
+                return;
+            }
+        }
+        pcmData = decoder.decodeFrame(frame, pcmData);
+        int bytesPerFrame = streamInfo.getChannels() * ((streamInfo.getBitsPerSample() + 7) / 8);
+        int offset = (int) Math.max(0, targetSample - frame.header.sampleNumber) * bytesPerFrame;
+        if (offset < pcmData.getLen()) {
+            getCircularBuffer().write(pcmData.getData(), offset, pcmData.getLen() - offset);
         }
-        return -1;
     }
 
     public void execute() {
@@ -282,6 +282,9 @@ public class FlacAudioFileReader extends TAudioFileReader {
             af_properties.put("bitrate", new Integer(AudioSystem.NOT_SPECIFIED));
             af_properties.put("vbr", Boolean.FALSE);
             af_properties.put("quality", new Integer(100));
+            if (lFileLengthInBytes > 0) {
+                af_properties.put("flac.length.bytes", Long.valueOf(lFileLengthInBytes));
+            }
 
             //} catch (UnsupportedAudioFileException e) {
             // reset the stream for other providers
@@ -331,9 +334,13 @@ public class FlacAudioFileReader extends TAudioFileReader {
      */
     @Override
     public AudioInputStream getAudioInputStream(File file) throws UnsupportedAudioFileException, IOException {
-        InputStream inputStream = new FileInputStream(file);
+        FileInputStream inputStream = new FileInputStream(file);
         try {
-            return getAudioInputStream(inputStream, (int) file.length());
+            AudioFileFormat audioFileFormat = getAudioFileFormat(inputStream, (int) file.length());
+            // Rewind the file rather than pushing back the header, so that
+            // skipping in the returned stream stays a file seek.
+            inputStream.getChannel().position(0);
+            return new AudioInputStream(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength());
         } catch (UnsupportedAudioFileException e) {
             inputStream.close();
             throw e;
@@ -415,7 +422,7 @@ public class FlacAudioFileReader extends TAudioFileReader {
         BitOutputStream bitOutStream = new BitOutputStream(byteOutStream);
         bitOutStream.writeByteBlock(Constants.STREAM_SYNC_STRING, Constants.STREAM_SYNC_STRING.length);
         /** TODO what if StreamInfo not last? */
-        streamInfo.write(bitOutStream, false);
+        streamInfo.write(bitOutStream, streamInfo.isLast());
 
         // flush bit input stream
         BitInputStream bis = decoder.getBitInputStream();
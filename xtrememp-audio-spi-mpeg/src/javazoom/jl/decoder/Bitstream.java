@@ -132,6 +132,11 @@ public final class Bitstream implements BitstreamErrors
 
 	private boolean					firstframe = true;
 
+	/**
+	 * Number of bytes consumed from the input stream.
+	 */
+	private long					position = 0;
+
 
 	/**
 	 * Construct a IBitstream that reads data from a
@@ -144,6 +149,7 @@ public final class Bitstream implements BitstreamErrors
 		if (in==null) throw new NullPointerException("in");
 		in = new BufferedInputStream(in);		
 		loadID3v2(in);
+		position = header_pos;
 		firstframe = true;
 		//source = new PushbackInputStream(in, 1024);
 		source = new PushbackInputStream(in, BUFFER_INT_SIZE*4);
@@ -162,6 +168,49 @@ public final class Bitstream implements BitstreamErrors
 		return header_pos;
 	}
 	
+	/**
+	 * Return the number of bytes consumed from the input stream,
+	 * ID3v2 frames included.
+	 * @return position in bytes
+	 */
+	public long position()
+	{
+		return position;
+	}
+
+	/**
+	 * Skip bytes in the input stream, dropping the current frame.
+	 * The next readFrame() call resynchronizes on the first frame header
+	 * found after the new position.
+	 * @param n number of bytes to skip
+	 * @return number of bytes actually skipped
+	 * @throws BitstreamException
+	 */
+	public long skip(long n) throws BitstreamException
+	{
+		closeFrame();
+		long skipped = 0;
+		try
+		{
+			while (skipped < n)
+			{
+				long s = source.skip(n - skipped);
+				if (s <= 0)
+				{
+					if (source.read() == -1) break;
+					s = 1;
+				}
+				skipped += s;
+			}
+		}
+		catch (IOException ex)
+		{
+			throw newBitstreamException(STREAM_ERROR, ex);
+		}
+		position += skipped;
+		return skipped;
+	}
+
 	/**
 	 * Load ID3v2 frames.
 	 * @param in MP3 InputStream.
@@ -340,6 +389,7 @@ public final class Bitstream implements BitstreamErrors
 			try
 			{
 				source.unread(frame_bytes, 0, framesize);
+				position -= framesize;
 			}
 			catch (IOException ex)
 			{
@@ -370,6 +420,7 @@ public final class Bitstream implements BitstreamErrors
 		try
 		{
 			source.unread(syncbuf, 0, read);
+			position -= read;
 		}
 		catch (IOException ex)
 		{
@@ -613,6 +664,7 @@ public final class Bitstream implements BitstreamErrors
 					//throw newBitstreamException(UNEXPECTED_EOF, new EOFException());
 				}
 				nRead = nRead + bytesread;
+				position += bytesread;
 				offs += bytesread;
 				len -= bytesread;
 			}
@@ -642,6 +694,7 @@ public final class Bitstream implements BitstreamErrors
 					break;
 				}
 				totalBytesRead += bytesread;
+				position += bytesread;
 				offs += bytesread;
 				len -= bytesread;
 			}
@@ -74,6 +74,7 @@ public final class Header
 	private int				h_vbr_scale;
 	private int				h_vbr_bytes;
 	private byte[]			h_vbr_toc;
+	private boolean			h_vbr_has_toc;
 	
 	private byte			syncmode = Bitstream.INITIAL_SYNC;
 	private Crc16			crc;
@@ -267,6 +268,7 @@ public final class Header
 				h_vbr_bytes = -1;
 				h_vbr_scale = -1;
 				h_vbr_toc = new byte[100];
+				h_vbr_has_toc = false;
 								
 				int length = 4;
 				// Read flags.
@@ -292,6 +294,7 @@ public final class Header
 				{
 					System.arraycopy(firstframe, offset + length, h_vbr_toc, 0, h_vbr_toc.length);
 					length += h_vbr_toc.length;	
+					h_vbr_has_toc = true;
 				}
 				// Read scale (if available).
 				if ((flags[3] & (byte) (1 << 3)) != 0)
@@ -323,6 +326,7 @@ public final class Header
 				h_vbr_bytes = -1;
 				h_vbr_scale = -1;
 				h_vbr_toc = new byte[100];
+				h_vbr_has_toc = false;
 				// Bytes.				
 				int length = 4 + 6;
 				System.arraycopy(firstframe, offset + length, tmp, 0, tmp.length);
@@ -411,6 +415,39 @@ public final class Header
 	 */
 	public byte[] vbr_toc() { return h_vbr_toc; }
 
+	/**
+	 * Return VBR TOC availability.
+	 * @return true if a Xing TOC has been parsed
+	 */
+	public boolean vbr_has_toc() { return h_vbr_has_toc; }
+
+	/**
+	 * Returns the byte offset, relative to the first frame, matching
+	 * the given time ratio. Uses the Xing TOC when available and falls
+	 * back to a linear estimation otherwise.
+	 * @param ratio time position in [0.0, 1.0]
+	 * @param streamsize audio data size in bytes
+	 * @return byte offset
+	 * @author E.B
+	 */
+	public long seek_offset(float ratio, long streamsize)
+	{
+		if (ratio <= 0.0f) return 0;
+		if (ratio > 1.0f) ratio = 1.0f;
+		if (h_vbr_has_toc)
+		{
+			long size = (h_vbr_bytes > 0) ? h_vbr_bytes : streamsize;
+			float percent = ratio * 100.0f;
+			int index = (int) percent;
+			if (index > 99) index = 99;
+			float fa = h_vbr_toc[index] & 0xFF;
+			float fb = (index < 99) ? (h_vbr_toc[index + 1] & 0xFF) : 256.0f;
+			float fx = fa + (fb - fa) * (percent - index);
+			return (long) ((fx / 256.0f) * size);
+		}
+		return (long) (ratio * streamsize);
+	}
+
 	/**
 	 * Returns Checksum flag.
 	 * Compares computed checksum with stream checksum.
@@ -205,15 +205,44 @@ public class DecodedMpegAudioInputStream extends TAsynchronousFilteredAudioInput
 		if (TDebug.TraceAudioConverter) TDebug.out("execute() : end");		
 	}
 
+	/**
+	 * Skip to the frame matching the given position in bytes of the encoded stream.
+	 * The target offset is computed from the VBR TOC (if any) or linearly from the
+	 * stream length, then the underlying stream is repositioned directly, so the
+	 * seek cost does not depend on the stream length.
+	 * @param bytes position in bytes of the encoded stream
+	 * @return bytes length skipped or -1 if skip is not supported
+	 */
 	public long skip(long bytes)
 	{
 		if ((byteslength > 0) && (frameslength > 0))
 		{
 			float ratio = bytes*1.0f/byteslength*1.0f;
-			long bytesread = skipFrames((long) (ratio*frameslength));
-			currentByte = currentByte + bytesread;
-            m_header = null;
-			return bytesread;					
+			if (m_header == null) 
+			{
+				// No reference header to compute offsets, walk frames instead.
+				long bytesread = skipFrames((long) (ratio*frameslength));
+				currentByte = currentByte + bytesread;
+				return bytesread;
+			}
+			long headerpos = m_bitstream.header_pos();
+			long target = headerpos + m_header.seek_offset(ratio, byteslength - headerpos);
+			long bytesread = 0;
+			try
+			{
+				long toSkip = target - m_bitstream.position();
+				if (toSkip > 0) bytesread = m_bitstream.skip(toSkip);
+				else m_bitstream.closeFrame();
+			}
+			catch (BitstreamException e)
+			{
+				if (TDebug.TraceAudioConverter) TDebug.out(e);
+			}
+			currentFrame = (long) (ratio*frameslength);
+			currentByte = m_bitstream.position() - headerpos;
+			currentMicrosecond = (long) (currentFrame* m_header.ms_per_frame()*1000.0f);
+			m_header = null;
+			return bytesread;
 		}
 		else return -1;
 	}
@@ -24,6 +24,7 @@ package javazoom.spi.vorbis.sampled.convert;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -42,6 +43,7 @@ import com.jcraft.jorbis.DspState;
 import com.jcraft.jorbis.Info;
 
 import org.tritonus.share.TDebug;
+import org.tritonus.share.sampled.TAudioFormat;
 import org.tritonus.share.sampled.convert.TAsynchronousFilteredAudioInputStream;
 
 /**
@@ -80,6 +82,12 @@ public class DecodedVorbisAudioInputStream extends TAsynchronousFilteredAudioInp
     private HashMap properties = null;
     private long byteslength = -1;
     private long currentBytes = 0;
+    // Length of the encoded stream in bytes and its duration in microseconds,
+    // both known only for local files. They enable the granule seek.
+    private long streamLength = -1;
+    private long duration = -1;
+    // Below this estimated distance in bytes, pages are walked linearly.
+    private static final long LINEAR_SEEK_BYTES = 64 * 1024;
 
     /**
      * Constructor.
@@ -94,6 +102,18 @@ public class DecodedVorbisAudioInputStream extends TAsynchronousFilteredAudioInp
             TDebug.out("DecodedVorbisAudioInputStream : Cannot run inputStream.available() : " + ex.getMessage());
             byteslength = -1;
         }
+        AudioFormat sourceFormat = bitStream.getFormat();
+        if (sourceFormat instanceof TAudioFormat) {
+            Map sourceProperties = ((TAudioFormat) sourceFormat).properties();
+            Object length = sourceProperties.get("ogg.length.bytes");
+            if (length instanceof Long) {
+                streamLength = ((Long) length).longValue();
+            }
+            Object time = sourceProperties.get("duration");
+            if (time instanceof Long) {
+                duration = ((Long) time).longValue();
+            }
+        }
         init_jorbis();
         index = 0;
         playState = playState_NeedHeaders;
@@ -508,12 +528,19 @@ public class DecodedVorbisAudioInputStream extends TAsynchronousFilteredAudioInp
             }
             readBytes = -1;
         }
-        currentBytes = currentBytes + readBytes;
+        if (readBytes > 0) {
+            currentBytes = currentBytes + readBytes;
+        }
         return readBytes;
     }
 
     /**
      * Skip bytes.
+     *
+     * <p>When the stream length and duration are known, <code>bytesToSkip</code>
+     * is mapped to a granule position and the stream is repositioned on the
+     * page holding it (see {@link #seekGranule(long)}). Otherwise the data is
+     * read through linearly.</p>
      */
     @Override
     public long skip(long bytesToSkip) {
@@ -527,6 +554,21 @@ public class DecodedVorbisAudioInputStream extends TAsynchronousFilteredAudioInp
                     return -1;
                 }
             }
+            if (streamLength > 0 && duration > 0 && playState != playState_Corrupt) {
+                long totalSamples = duration * vorbisInfo.rate / 1000000L;
+                double ratio = Math.min(1.0, Math.max(0.0, (double) bytesToSkip / streamLength));
+                long startBytes = currentBytes;
+                try {
+                    seekGranule((long) (ratio * totalSamples));
+                } catch (IOException ioe) {
+                    if (TDebug.TraceAudioConverter) {
+                        TDebug.out("Seek failed : " + ioe.getMessage());
+                    }
+                    playState = playState_Done;
+                    return -1;
+                }
+                return currentBytes - startBytes;
+            }
             long bytesReads = 0;
             if (playState != playState_Corrupt) {
                 while (bytesToSkip > 0) {
@@ -570,6 +612,128 @@ public class DecodedVorbisAudioInputStream extends TAsynchronousFilteredAudioInp
         }
     }
 
+    /**
+     * Repositions the stream so that decoding resumes at the given granule
+     * position (sample frame).
+     *
+     * <p>The underlying stream can only move forward, so the search is a
+     * forward bisection: the byte offset of the target is interpolated between
+     * the last page seen and the end of the stream, half of that distance is
+     * skipped and the granule position of the next page narrows the interval.
+     * Once the remaining distance is small, pages are walked without decoding
+     * until the one holding the target is found. That page, and the page before
+     * it to prime the overlap of the first block, are then decoded and the
+     * samples preceding the target are dropped.</p>
+     */
+    private void seekGranule(long targetGranule) throws IOException {
+        long lowGranule = 0;
+        long lowOffset = currentBytes - (oggSyncState_.getBufferOffset() - oggSyncState_.getDataOffset());
+        long highGranule = duration * vorbisInfo.rate / 1000000L;
+        long highOffset = streamLength;
+        ArrayList<Page> pages = new ArrayList<Page>();
+        boolean found = false;
+        while (!found && highGranule > lowGranule) {
+            long distance = (long) ((double) (targetGranule - lowGranule) / (highGranule - lowGranule) * (highOffset - lowOffset));
+            if (distance < LINEAR_SEEK_BYTES) {
+                break;
+            }
+            oggSyncState_.reset();
+            skipFromStream(lowOffset + distance / 2 - currentBytes);
+            long granule = -1;
+            while (granule == -1) {
+                if (!readPage()) {
+                    throw new IOException("End of stream while seeking.");
+                }
+                granule = oggPage_.granulepos();
+            }
+            pages.clear();
+            pages.add(oggPage_.copy());
+            if (granule >= targetGranule) {
+                // The bitrate was too uneven for the estimate: decode from here.
+                found = true;
+            } else {
+                lowGranule = granule;
+                lowOffset = currentBytes - (oggSyncState_.getBufferOffset() - oggSyncState_.getDataOffset());
+            }
+        }
+        while (!found) {
+            if (!readPage()) {
+                break;
+            }
+            long granule = oggPage_.granulepos();
+            if (granule != -1 && granule < targetGranule) {
+                pages.clear();
+            }
+            pages.add(oggPage_.copy());
+            found = (granule >= targetGranule);
+        }
+        if (pages.isEmpty()) {
+            playState = playState_Done;
+            return;
+        }
+        // Restart the decoder on the pages found.
+        oggStreamState_.reset();
+        vorbisDspState.synthesis_init(vorbisInfo);
+        vorbisBlock.init(vorbisDspState);
+        int last = pages.size() - 1;
+        for (int p = 0; p <= last; p++) {
+            oggStreamState_.pagein(pages.get(p));
+            int result;
+            while ((result = oggStreamState_.packetout(oggPacket_)) != 0) {
+                if (result == 1 && vorbisBlock.synthesis(oggPacket_) == 0) {
+                    vorbisDspState.synthesis_blockin(vorbisBlock);
+                }
+            }
+            int samples = vorbisDspState.synthesis_pcmout(_pcmf, _index);
+            if (p < last) {
+                // Samples before the last page all precede the target.
+                vorbisDspState.synthesis_read(samples);
+            } else {
+                long firstGranule = pages.get(p).granulepos() - samples;
+                if (targetGranule > firstGranule) {
+                    vorbisDspState.synthesis_read((int) Math.min(samples, targetGranule - firstGranule));
+                }
+            }
+        }
+        outputSamples();
+    }
+
+    /**
+     * Reads the next page into oggPage_, resynchronizing if needed.
+     *
+     * @return false at end of stream.
+     */
+    private boolean readPage() {
+        while (oggSyncState_.pageout(oggPage_) != 1) {
+            index = oggSyncState_.buffer(bufferSize_);
+            buffer = oggSyncState_.data;
+            bytes = readFromStream(buffer, index, bufferSize_);
+            if (bytes <= 0) {
+                return false;
+            }
+            oggSyncState_.wrote(bytes);
+        }
+        return true;
+    }
+
+    /**
+     * Skips forward in oggBitStream_, falling back to reading when the
+     * stream cannot skip.
+     */
+    private void skipFromStream(long n) throws IOException {
+        while (n > 0) {
+            long skipped = oggBitStream_.skip(n);
+            if (skipped <= 0) {
+                if (oggBitStream_.read() == -1) {
+                    return;
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+            currentBytes += skipped;
+        }
+    }
+
     /**
      * Close the stream.
      */
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import javax.sound.sampled.AudioFileFormat;
@@ -89,13 +90,11 @@ public class VorbisAudioFileReader extends TAudioFileReader {
         try {
             inputStream = new BufferedInputStream(new FileInputStream(file));
             inputStream.mark(MARK_LIMIT);
-            // AudioFileFormat aff = getAudioFileFormat(inputStream);
+            // Check the file is Vorbis before inspecting it as such.
+            getAudioFileFormat(inputStream, (int) file.length(), AudioSystem.NOT_SPECIFIED);
             inputStream.reset();
             // Get Vorbis file info such as length in seconds.
-            VorbisFile vf = new VorbisFile(file.getAbsolutePath());
-            return getAudioFileFormat(inputStream, (int) file.length(), (int) Math.round((vf.time_total(-1)) * 1000));
-        } catch (JOrbisException e) {
-            throw new IOException(e.getMessage());
+            return getAudioFileFormat(inputStream, (int) file.length(), getTotalMillis(file));
         } finally {
             if (inputStream != null) {
                 inputStream.close();
@@ -151,15 +150,15 @@ public class VorbisAudioFileReader extends TAudioFileReader {
      * Return the AudioFileFormat from the given InputStream, length in bytes and length in milliseconds.
      */
     protected AudioFileFormat getAudioFileFormat(InputStream bitStream, int mediaLength, int totalms) throws UnsupportedAudioFileException, IOException {
-        HashMap aff_properties = new HashMap();
-        HashMap af_properties = new HashMap();
+        Map<String, Object> aff_properties = new HashMap<String, Object>();
+        Map<String, Object> af_properties = new HashMap<String, Object>();
         if (totalms == AudioSystem.NOT_SPECIFIED) {
             totalms = 0;
         }
         if (totalms <= 0) {
             totalms = 0;
         } else {
-            aff_properties.put("duration", new Long(totalms * 1000));
+            aff_properties.put("duration", Long.valueOf(totalms * 1000L));
         }
         oggBitStream_ = bitStream;
         init_jorbis();
@@ -195,29 +194,33 @@ public class VorbisAudioFileReader extends TAudioFileReader {
             }
         }
         if (nominalbitrate > 0) {
-            af_properties.put("bitrate", new Integer(nominalbitrate));
+            af_properties.put("bitrate", Integer.valueOf(nominalbitrate));
         }
         af_properties.put("vbr", Boolean.TRUE);
 
         if (minbitrate > 0) {
-            aff_properties.put("ogg.bitrate.min.bps", new Integer(minbitrate));
+            aff_properties.put("ogg.bitrate.min.bps", Integer.valueOf(minbitrate));
         }
         if (maxbitrate > 0) {
-            aff_properties.put("ogg.bitrate.max.bps", new Integer(maxbitrate));
+            aff_properties.put("ogg.bitrate.max.bps", Integer.valueOf(maxbitrate));
         }
         if (nominalbitrate > 0) {
-            aff_properties.put("ogg.bitrate.nominal.bps", new Integer(nominalbitrate));
+            aff_properties.put("ogg.bitrate.nominal.bps", Integer.valueOf(nominalbitrate));
         }
         if (vorbisInfo.channels > 0) {
-            aff_properties.put("ogg.channels", new Integer(vorbisInfo.channels));
+            aff_properties.put("ogg.channels", Integer.valueOf(vorbisInfo.channels));
         }
         if (vorbisInfo.rate > 0) {
-            aff_properties.put("ogg.frequency.hz", new Integer(vorbisInfo.rate));
+            aff_properties.put("ogg.frequency.hz", Integer.valueOf(vorbisInfo.rate));
         }
         if (mediaLength > 0) {
-            aff_properties.put("ogg.length.bytes", new Integer(mediaLength));
+            aff_properties.put("ogg.length.bytes", Integer.valueOf(mediaLength));
+            af_properties.put("ogg.length.bytes", Long.valueOf(mediaLength));
+        }
+        if (totalms > 0) {
+            af_properties.put("duration", Long.valueOf(totalms * 1000L));
         }
-        aff_properties.put("ogg.version", new Integer(vorbisInfo.version));
+        aff_properties.put("ogg.version", Integer.valueOf(vorbisInfo.version));
 
         //AudioFormat.Encoding encoding = VorbisEncoding.VORBISENC;
         //AudioFormat format = new VorbisAudioFormat(encoding, vorbisInfo.rate, AudioSystem.NOT_SPECIFIED, vorbisInfo.channels, AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, true,af_properties);
@@ -280,9 +283,15 @@ public class VorbisAudioFileReader extends TAudioFileReader {
         if (TDebug.TraceAudioFileReader) {
             TDebug.out("getAudioInputStream(File file)");
         }
-        InputStream inputStream = new FileInputStream(file);
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
         try {
-            return getAudioInputStream(inputStream);
+            inputStream.mark(MARK_LIMIT);
+            // Check the file is Vorbis before inspecting it as such, so that
+            // other providers are tried for other formats.
+            getAudioFileFormat(inputStream, (int) file.length(), AudioSystem.NOT_SPECIFIED);
+            inputStream.reset();
+            // Length in bytes and in milliseconds allow the decoder to seek.
+            return getAudioInputStream(inputStream, (int) file.length(), getTotalMillis(file));
         } catch (UnsupportedAudioFileException e) {
             if (inputStream != null) {
                 inputStream.close();
@@ -296,6 +305,35 @@ public class VorbisAudioFileReader extends TAudioFileReader {
         }
     }
 
+    /**
+     * Returns the length in milliseconds of a Vorbis file, or
+     * AudioSystem.NOT_SPECIFIED if it cannot be computed.
+     */
+    private static int getTotalMillis(File file) {
+        VorbisFile vf = null;
+        try {
+            vf = new VorbisFile(file.getAbsolutePath());
+            float total = vf.time_total(-1);
+            return (total > 0) ? Math.round(total * 1000) : AudioSystem.NOT_SPECIFIED;
+        } catch (JOrbisException e) {
+            if (TDebug.TraceAudioFileReader) {
+                TDebug.out(e.getMessage());
+            }
+            return AudioSystem.NOT_SPECIFIED;
+        } finally {
+            // The data source is null if the file could not be opened.
+            if (vf != null && vf.streams() > 0) {
+                try {
+                    vf.close();
+                } catch (IOException e) {
+                    if (TDebug.TraceAudioFileReader) {
+                        TDebug.out(e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Return the AudioInputStream from the given URL.
      */
@@ -323,7 +361,7 @@ public class VorbisAudioFileReader extends TAudioFileReader {
     /**
      * Reads headers and comments.
      */
-    private void readHeaders(HashMap aff_properties, HashMap af_properties) throws IOException {
+    private void readHeaders(Map<String, Object> aff_properties, Map<String, Object> af_properties) throws IOException {
         if (TDebug.TraceAudioConverter) {
             TDebug.out("readHeaders(");
         }
@@ -349,7 +387,7 @@ public class VorbisAudioFileReader extends TAudioFileReader {
         oggStreamState_.init(oggPage_.serialno());
         vorbisInfo.init();
         vorbisComment.init();
-        aff_properties.put("ogg.serial", new Integer(oggPage_.serialno()));
+        aff_properties.put("ogg.serial", Integer.valueOf(oggPage_.serialno()));
         if (oggStreamState_.pagein(oggPage_) < 0) {
             // error; stream version mismatch perhaps
             if (TDebug.TraceAudioConverter) {